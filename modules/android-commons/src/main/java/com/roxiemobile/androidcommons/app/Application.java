@@ -9,10 +9,45 @@ import android.support.annotation.Nullable;
 import com.roxiemobile.androidcommons.diagnostics.Guard;
 import com.roxiemobile.androidcommons.logging.Logger;
 
+import java.util.Collections;
+import java.util.List;
+
 public class Application extends android.app.Application
 {
+// MARK: - Properties
+
+    /**
+     * Returns the timings of the startup tasks, or {@code null} if there were none.
+     */
+    public @Nullable StartupGraph.Report getStartupReport() {
+        return mStartupReport;
+    }
+
 // MARK: - Methods
 
+    /**
+     * Runs the startup tasks returned by {@link #onCreateStartupTasks()}. Subclasses must call
+     * through to this method before they access the initialized components.
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        List<StartupTask> tasks = onCreateStartupTasks();
+        if (tasks != null && !tasks.isEmpty()) {
+            mStartupReport = new StartupGraph(tasks).run(this);
+            Logger.i(TAG, mStartupReport.toString());
+        }
+    }
+
+    /**
+     * Returns the initializers run by {@link #onCreate()}. The worker tasks run in parallel on the
+     * worker pool, the main tasks on the main thread, each one once its dependencies have finished.
+     */
+    protected @NonNull List<StartupTask> onCreateStartupTasks() {
+        return Collections.emptyList();
+    }
+
     public static @Nullable PackageInfo getPackageInfo(@NonNull Context context) {
         Guard.notNull(context, "context is null");
 
@@ -43,4 +78,8 @@ public class Application extends android.app.Application
 // MARK: - Constants
 
     private static final String TAG = Application.class.getSimpleName();
+
+// MARK: - Variables
+
+    private StartupGraph.Report mStartupReport;
 }
@@ -0,0 +1,485 @@
+package com.roxiemobile.androidcommons.app;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import com.roxiemobile.androidcommons.app.StartupTask.ThreadAffinity;
+import com.roxiemobile.androidcommons.concurrent.ParallelWorkerThreadExecutor;
+import com.roxiemobile.androidcommons.concurrent.ParallelWorkerThreadExecutor.Priority;
+import com.roxiemobile.androidcommons.concurrent.ThreadUtils;
+import com.roxiemobile.androidcommons.concurrent.Ticker;
+import com.roxiemobile.androidcommons.diagnostics.Guard;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the startup tasks in the order of their dependencies.
+ * <p>
+ * The worker tasks whose dependencies have finished run in parallel on the worker executor, the
+ * main tasks run one by one on the thread calling {@link #run}. The call returns once every task
+ * has finished, with the timings of the tasks and of the critical path, i.e. the chain of
+ * dependent tasks that bounds the startup time.
+ * <p>
+ * While a graph run on the main thread is in progress the Looper of the main thread is not served,
+ * so the worker tasks must not block on the main thread. A blocking hand-off of a worker task with
+ * {@link ThreadUtils#runOnUiThreadBlocking} fails the task with an {@link IllegalStateException}
+ * instead of deadlocking the startup. The other threads of the process are not affected, their
+ * hand-offs are served once the graph is done.
+ */
+public final class StartupGraph
+{
+// MARK: - Construction
+
+    /**
+     * @throws IllegalArgumentException if a name is not unique, a dependency is unknown, or the
+     * dependencies form a cycle
+     */
+    public StartupGraph(@NonNull List<? extends StartupTask> tasks) {
+        this(tasks, Ticker.SYSTEM);
+    }
+
+    @VisibleForTesting
+    StartupGraph(@NonNull List<? extends StartupTask> tasks, @NonNull Ticker ticker) {
+        Guard.notNull(tasks, "tasks is null");
+        Guard.notNull(ticker, "ticker is null");
+        mTicker = ticker;
+
+        for (StartupTask task : tasks) {
+            Guard.notNull(task, "task is null");
+            if (mNodes.put(task.getName(), new Node(task)) != null) {
+                throw new IllegalArgumentException("Duplicate startup task '" + task.getName() + "'");
+            }
+        }
+
+        for (Node node : mNodes.values()) {
+            for (String name : node.mTask.getDependencies()) {
+                Node dependency = mNodes.get(name);
+                if (dependency == null) {
+                    throw new IllegalArgumentException("Startup task '" + node.mTask.getName() +
+                            "' depends on unknown task '" + name + "'");
+                }
+                dependency.mDependents.add(node);
+                node.mDependencies.add(dependency);
+            }
+            node.mPendingCount = node.mDependencies.size();
+        }
+        checkAcyclic();
+    }
+
+// MARK: - Methods
+
+    /**
+     * Runs the tasks with the worker tasks on the {@link ParallelWorkerThreadExecutor#defaultExecutor}
+     * in its interactive lane. A graph can be run once.
+     */
+    public @NonNull Report run(@NonNull Context context) {
+        return run(context, ParallelWorkerThreadExecutor.defaultExecutor(Priority.Interactive));
+    }
+
+    /**
+     * Runs the tasks and blocks until all of them have finished.
+     *
+     * @throws IllegalStateException if a task has failed, after the running tasks have finished
+     */
+    public @NonNull Report run(@NonNull final Context context, @NonNull Executor workerExecutor) {
+        Guard.notNull(context, "context is null");
+        Guard.notNull(workerExecutor, "workerExecutor is null");
+
+        synchronized (mLock) {
+            if (mStarted) {
+                throw new IllegalStateException("Startup graph has already been run");
+            }
+            mStarted = true;
+        }
+
+        // The worker tasks blocking on the main thread which waits for them fail instead of deadlocking
+        mHoldsUiThread = ThreadUtils.runningOnUiThread();
+        mContext = context;
+        mWorkerExecutor = workerExecutor;
+        mStartTime = mTicker.nanoTime();
+
+        List<Node> ready = new ArrayList<>();
+        synchronized (mLock) {
+            for (Node node : mNodes.values()) {
+                if (node.mPendingCount == 0) {
+                    ready.add(node);
+                    mInFlightCount++;
+                }
+            }
+            signalIfDone();
+        }
+        dispatch(ready);
+
+        // Serve the main tasks on the calling thread until the graph is done
+        boolean interrupted = false;
+        while (true) {
+            Node node;
+            try {
+                node = mMainQueue.take();
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+                continue;
+            }
+
+            if (node == DONE) {
+                break;
+            }
+            runNode(node);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (mFailure != null) {
+            throw new IllegalStateException("Startup task '" + mFailedTask.getName() + "' has failed", mFailure);
+        }
+        return newReport(mTicker.nanoTime() - mStartTime);
+    }
+
+// MARK: - Private Methods
+
+    private void checkAcyclic() {
+        Map<Node, Integer> pendingCounts = new LinkedHashMap<>();
+        Queue<Node> ready = new ArrayDeque<>();
+        for (Node node : mNodes.values()) {
+            pendingCounts.put(node, node.mDependencies.size());
+            if (node.mDependencies.isEmpty()) {
+                ready.add(node);
+            }
+        }
+
+        Node node;
+        while ((node = ready.poll()) != null) {
+            mOrderedNodes.add(node);
+            for (Node dependent : node.mDependents) {
+                int pending = pendingCounts.get(dependent) - 1;
+                pendingCounts.put(dependent, pending);
+                if (pending == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        if (mOrderedNodes.size() < mNodes.size()) {
+            List<String> names = new ArrayList<>();
+            for (Map.Entry<Node, Integer> entry : pendingCounts.entrySet()) {
+                if (entry.getValue() > 0) {
+                    names.add(entry.getKey().mTask.getName());
+                }
+            }
+            throw new IllegalArgumentException("Startup tasks form a dependency cycle: " + names);
+        }
+    }
+
+    private void dispatch(@NonNull List<Node> nodes) {
+        for (final Node node : nodes) {
+            if (node.mTask.getAffinity() == ThreadAffinity.Main) {
+                mMainQueue.add(node);
+                continue;
+            }
+
+            try {
+                mWorkerExecutor.execute(() -> runNode(node));
+            }
+            catch (RuntimeException e) {
+                // Never leave the calling thread waiting for a task the executor has refused
+                onFinished(node, e);
+            }
+        }
+    }
+
+    private void runNode(@NonNull Node node) {
+        // Skip the task which has become ready before another task failed
+        synchronized (mLock) {
+            if (mFailure != null) {
+                mInFlightCount--;
+                signalIfDone();
+                return;
+            }
+        }
+
+        node.mThreadName = Thread.currentThread().getName();
+        node.mStartTime = mTicker.nanoTime();
+
+        // Only the worker tasks of this graph are awaited by the main thread, other threads may still block on it
+        boolean awaited = mHoldsUiThread && !ThreadUtils.runningOnUiThread();
+        String previousAwaiter = awaited ? ThreadUtils.setAwaitedByUiThread(AWAITER_NAME) : null;
+
+        Throwable failure = null;
+        try {
+            node.mTask.run(mContext);
+        }
+        catch (Throwable e) {
+            failure = e;
+        }
+        finally {
+            node.mEndTime = mTicker.nanoTime();
+            if (awaited) {
+                ThreadUtils.setAwaitedByUiThread(previousAwaiter);
+            }
+        }
+        onFinished(node, failure);
+    }
+
+    private void onFinished(@NonNull Node node, Throwable failure) {
+        List<Node> ready = new ArrayList<>();
+        synchronized (mLock) {
+            mInFlightCount--;
+            mFinishedCount++;
+
+            if (failure != null && mFailure == null) {
+                mFailure = failure;
+                mFailedTask = node.mTask;
+            }
+
+            if (mFailure == null) {
+                for (Node dependent : node.mDependents) {
+                    if (--dependent.mPendingCount == 0) {
+                        ready.add(dependent);
+                        mInFlightCount++;
+                    }
+                }
+            }
+            signalIfDone();
+        }
+        dispatch(ready);
+    }
+
+    // Must be called under the lock
+    private void signalIfDone() {
+        if (mInFlightCount == 0 && (mFailure != null || mFinishedCount == mNodes.size())) {
+            mMainQueue.add(DONE);
+        }
+    }
+
+    private @NonNull Report newReport(long totalNanos) {
+        List<TaskTiming> timings = new ArrayList<>();
+        Map<Node, Long> finishTimes = new LinkedHashMap<>();
+        Map<Node, Node> criticalDependencies = new LinkedHashMap<>();
+
+        // Every dependency is visited before its dependents
+        Node lastNode = null;
+        for (Node node : mOrderedNodes) {
+            long duration = node.mEndTime - node.mStartTime;
+            timings.add(new TaskTiming(node.mTask.getName(), node.mTask.getAffinity(), node.mThreadName,
+                    node.mStartTime - mStartTime, duration));
+
+            // The earliest finish time if the tasks had no other constraint than their dependencies
+            Node criticalDependency = null;
+            long startTime = 0L;
+            for (Node dependency : node.mDependencies) {
+                long finishTime = finishTimes.get(dependency);
+                if (criticalDependency == null || finishTime > startTime) {
+                    criticalDependency = dependency;
+                    startTime = finishTime;
+                }
+            }
+            finishTimes.put(node, startTime + duration);
+            criticalDependencies.put(node, criticalDependency);
+
+            if (lastNode == null || finishTimes.get(node) > finishTimes.get(lastNode)) {
+                lastNode = node;
+            }
+        }
+
+        Collections.sort(timings, (timing1, timing2) -> Long.compare(timing1.mStartNanos, timing2.mStartNanos));
+
+        List<String> criticalPath = new ArrayList<>();
+        for (Node node = lastNode; node != null; node = criticalDependencies.get(node)) {
+            criticalPath.add(0, node.mTask.getName());
+        }
+
+        long criticalPathNanos = (lastNode != null) ? finishTimes.get(lastNode) : 0L;
+        return new Report(timings, criticalPath, criticalPathNanos, totalNanos);
+    }
+
+// MARK: - Inner Types
+
+    /**
+     * The timings of a startup, the tasks are listed in the order they have started.
+     */
+    public static final class Report
+    {
+        Report(@NonNull List<TaskTiming> timings, @NonNull List<String> criticalPath, long criticalPathNanos, long totalNanos) {
+            mTimings = Collections.unmodifiableList(timings);
+            mCriticalPath = Collections.unmodifiableList(criticalPath);
+            mCriticalPathNanos = criticalPathNanos;
+            mTotalNanos = totalNanos;
+        }
+
+        public @NonNull List<TaskTiming> getTimings() {
+            return mTimings;
+        }
+
+        /**
+         * Returns the names of the chain of dependent tasks with the longest total duration.
+         */
+        public @NonNull List<String> getCriticalPath() {
+            return mCriticalPath;
+        }
+
+        /**
+         * Returns the total duration of the critical path, the lower bound of the startup time.
+         */
+        public long getCriticalPathNanos() {
+            return mCriticalPathNanos;
+        }
+
+        /**
+         * Returns the wall-clock time of the whole startup.
+         */
+        public long getTotalNanos() {
+            return mTotalNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder()
+                    .append("Startup took ").append(TimeUnit.NANOSECONDS.toMillis(mTotalNanos))
+                    .append(" ms, critical path ").append(TimeUnit.NANOSECONDS.toMillis(mCriticalPathNanos))
+                    .append(" ms: ").append(mCriticalPath);
+
+            for (TaskTiming timing : mTimings) {
+                builder.append("\n    ").append(timing);
+            }
+            return builder.toString();
+        }
+
+        private final List<TaskTiming> mTimings;
+
+        private final List<String> mCriticalPath;
+
+        private final long mCriticalPathNanos;
+
+        private final long mTotalNanos;
+    }
+
+    public static final class TaskTiming
+    {
+        TaskTiming(@NonNull String name, @NonNull ThreadAffinity affinity, @NonNull String threadName, long startNanos, long durationNanos) {
+            mName = name;
+            mAffinity = affinity;
+            mThreadName = threadName;
+            mStartNanos = startNanos;
+            mDurationNanos = durationNanos;
+        }
+
+        public @NonNull String getName() {
+            return mName;
+        }
+
+        public @NonNull ThreadAffinity getAffinity() {
+            return mAffinity;
+        }
+
+        public @NonNull String getThreadName() {
+            return mThreadName;
+        }
+
+        /**
+         * Returns the start time of the task relative to the start of the graph.
+         */
+        public long getStartNanos() {
+            return mStartNanos;
+        }
+
+        public long getDurationNanos() {
+            return mDurationNanos;
+        }
+
+        @Override
+        public String toString() {
+            return mName + " [" + mThreadName + "] +" + TimeUnit.NANOSECONDS.toMillis(mStartNanos) +
+                    " ms, " + TimeUnit.NANOSECONDS.toMillis(mDurationNanos) + " ms";
+        }
+
+        private final String mName;
+
+        private final ThreadAffinity mAffinity;
+
+        private final String mThreadName;
+
+        private final long mStartNanos;
+
+        private final long mDurationNanos;
+    }
+
+    private static final class Node
+    {
+        Node(@NonNull StartupTask task) {
+            mTask = task;
+        }
+
+        final StartupTask mTask;
+
+        final List<Node> mDependencies = new ArrayList<>();
+
+        final List<Node> mDependents = new ArrayList<>();
+
+        // Guarded by mLock, set to the number of dependencies before the graph is run
+        int mPendingCount;
+
+        // Written by the running thread, read after the graph is done
+        volatile String mThreadName;
+
+        volatile long mStartTime;
+
+        volatile long mEndTime;
+    }
+
+// MARK: - Constants
+
+    private static final String AWAITER_NAME = StartupGraph.class.getSimpleName();
+
+    // Tells the calling thread that the graph is done
+    private static final Node DONE = new Node(new StartupTask("DONE", ThreadAffinity.Main) {
+        @Override
+        public void run(@NonNull Context context) {
+            // Do nothing
+        }
+    });
+
+// MARK: - Variables
+
+    private final Ticker mTicker;
+
+    private final Map<String, Node> mNodes = new LinkedHashMap<>();
+
+    // The nodes in the order of their dependencies
+    private final List<Node> mOrderedNodes = new ArrayList<>();
+
+    private final BlockingQueue<Node> mMainQueue = new LinkedBlockingQueue<>();
+
+    private final Object mLock = new Object();
+
+    private boolean mStarted = false;
+
+    private int mInFlightCount = 0;
+
+    private int mFinishedCount = 0;
+
+    private Throwable mFailure;
+
+    private StartupTask mFailedTask;
+
+    private volatile Context mContext;
+
+    private volatile Executor mWorkerExecutor;
+
+    // Whether the graph runs on the main thread, which then serves no Looper messages until it is done
+    private volatile boolean mHoldsUiThread;
+
+    private long mStartTime;
+}
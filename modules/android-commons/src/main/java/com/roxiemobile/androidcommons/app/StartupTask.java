@@ -0,0 +1,83 @@
+package com.roxiemobile.androidcommons.app;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.roxiemobile.androidcommons.diagnostics.Guard;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An initializer run by the {@link StartupGraph} once the tasks it depends on have finished.
+ */
+public abstract class StartupTask
+{
+// MARK: - Construction
+
+    /**
+     * @param name The unique name of the task
+     * @param affinity The thread the task must run on
+     * @param dependencies The names of the tasks which must finish before this one starts
+     */
+    protected StartupTask(@NonNull String name, @NonNull ThreadAffinity affinity, @NonNull String... dependencies) {
+        Guard.notEmpty(name, "name is empty");
+        Guard.notNull(affinity, "affinity is null");
+        Guard.notNull(dependencies, "dependencies is null");
+
+        mName = name;
+        mAffinity = affinity;
+        mDependencies = Collections.unmodifiableList(Arrays.asList(dependencies.clone()));
+    }
+
+// MARK: - Properties
+
+    public final @NonNull String getName() {
+        return mName;
+    }
+
+    public final @NonNull ThreadAffinity getAffinity() {
+        return mAffinity;
+    }
+
+    public final @NonNull List<String> getDependencies() {
+        return mDependencies;
+    }
+
+// MARK: - Methods
+
+    /**
+     * Initializes the component. An exception stops the startup and is rethrown by {@link StartupGraph#run}.
+     * <p>
+     * A {@link ThreadAffinity#Worker} task must not wait for the main thread, e.g. with
+     * {@code ThreadUtils.runOnUiThreadBlocking()}. The main thread is busy running the graph, so
+     * such a wait fails with an {@link IllegalStateException}. Use a {@link ThreadAffinity#Main}
+     * task that depends on this one instead.
+     */
+    public abstract void run(@NonNull Context context) throws Exception;
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+
+// MARK: - Inner Types
+
+    public enum ThreadAffinity
+    {
+        // The thread which runs the graph, normally the main thread in Application.onCreate()
+        Main,
+        // A thread of the worker pool, in parallel with the other ready tasks. The task must not
+        // block on the main thread, which does not serve its Looper while the graph runs
+        Worker
+    }
+
+// MARK: - Variables
+
+    private final String mName;
+
+    private final ThreadAffinity mAffinity;
+
+    private final List<String> mDependencies;
+}
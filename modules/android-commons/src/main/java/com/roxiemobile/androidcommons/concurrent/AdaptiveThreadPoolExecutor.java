@@ -0,0 +1,132 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.os.Debug;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A thread pool for blocking work which resizes itself after the measured blocked-time ratio.
+ * <p>
+ * Every task is timed in wall-clock and thread CPU time. Once per {@value #SAMPLE_SIZE} tasks the
+ * blocked ratio of the sample is folded into a moving average, and the core pool size is set to
+ * {@code cpuCount / (1 - blockedRatio)}, clamped to the given bounds. Pure CPU work keeps the pool
+ * near the core count, while tasks waiting for the disk or the network let it grow.
+ */
+final class AdaptiveThreadPoolExecutor extends ThreadPoolExecutor
+{
+// MARK: - Construction
+
+    AdaptiveThreadPoolExecutor(int minPoolSize, int maxPoolSize, long keepAliveTime, @NonNull TimeUnit unit,
+            @NonNull BlockingQueue<Runnable> workQueue, @NonNull ThreadFactory threadFactory,
+            @NonNull RejectedExecutionHandler handler) {
+        super(minPoolSize, maxPoolSize, keepAliveTime, unit, workQueue, threadFactory, handler);
+
+        mMinPoolSize = minPoolSize;
+        mMaxPoolSize = maxPoolSize;
+        allowCoreThreadTimeOut(keepAliveTime > 0);
+    }
+
+// MARK: - Properties
+
+    /**
+     * Returns the moving average of the share of time the tasks spent blocked, from 0 to 1, or -1
+     * before the first sample is complete.
+     */
+    double getBlockedRatio() {
+        synchronized (mLock) {
+            return mBlockedRatio;
+        }
+    }
+
+// MARK: - Methods
+
+    @Override
+    protected void beforeExecute(Thread thread, Runnable runnable) {
+        super.beforeExecute(thread, runnable);
+
+        long[] startTime = sStartTime.get();
+        startTime[0] = System.nanoTime();
+        startTime[1] = Debug.threadCpuTimeNanos();
+    }
+
+    @Override
+    protected void afterExecute(Runnable runnable, Throwable cause) {
+        long[] startTime = sStartTime.get();
+        long wallTime = System.nanoTime() - startTime[0];
+        long cpuTime = Debug.threadCpuTimeNanos() - startTime[1];
+
+        // Skip the task if the runtime does not support the thread CPU time
+        if (startTime[1] >= 0 && cpuTime >= 0) {
+            record(wallTime, Math.min(cpuTime, wallTime));
+        }
+        super.afterExecute(runnable, cause);
+    }
+
+// MARK: - Private Methods
+
+    private void record(long wallTime, long cpuTime) {
+        int poolSize = -1;
+        synchronized (mLock) {
+            mSampleWallTime += wallTime;
+            mSampleCpuTime += cpuTime;
+
+            if (++mSampleCount < SAMPLE_SIZE) {
+                return;
+            }
+
+            if (mSampleWallTime > 0) {
+                double ratio = 1.0 - (double) mSampleCpuTime / mSampleWallTime;
+                mBlockedRatio = (mBlockedRatio < 0) ? ratio : mBlockedRatio + SMOOTHING * (ratio - mBlockedRatio);
+
+                double busyRatio = Math.max(1.0 - mBlockedRatio, 1.0 / mMaxPoolSize);
+                poolSize = Math.max(mMinPoolSize, Math.min(mMaxPoolSize, (int) Math.round(CPU_COUNT / busyRatio)));
+            }
+
+            mSampleCount = 0;
+            mSampleWallTime = 0;
+            mSampleCpuTime = 0;
+        }
+
+        if (poolSize > 0 && poolSize != getCorePoolSize()) {
+            setCorePoolSize(poolSize);
+        }
+    }
+
+// MARK: - Constants
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+
+    // The number of tasks measured between two resizes
+    private static final int SAMPLE_SIZE = 32;
+
+    // The weight of the latest sample in the moving average
+    private static final double SMOOTHING = 0.5;
+
+// MARK: - Variables
+
+    private static final ThreadLocal<long[]> sStartTime = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[2];
+        }
+    };
+
+    private final int mMinPoolSize;
+
+    private final int mMaxPoolSize;
+
+    private final Object mLock = new Object();
+
+    private double mBlockedRatio = -1;
+
+    private int mSampleCount = 0;
+
+    private long mSampleWallTime = 0;
+
+    private long mSampleCpuTime = 0;
+}
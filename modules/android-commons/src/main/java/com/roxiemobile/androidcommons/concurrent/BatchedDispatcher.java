@@ -0,0 +1,84 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects tasks in a lock-free queue and runs them in submission order from a single drain
+ * message, so a burst of tasks costs one message instead of one message per task.
+ * <p>
+ * A drain runs only the tasks submitted before it has started, tasks submitted while draining are
+ * left to the next drain message so a self-resubmitting task cannot block the Looper.
+ */
+final class BatchedDispatcher
+{
+// MARK: - Construction
+
+    /**
+     * @param poster The executor that posts a drain message to the target Looper
+     */
+    BatchedDispatcher(@NonNull Executor poster) {
+        mPoster = poster;
+    }
+
+// MARK: - Methods
+
+    void dispatch(@NonNull Runnable runnable) {
+        mQueue.offer(runnable);
+        mSubmittedCount.incrementAndGet();
+        scheduleDrain();
+    }
+
+    /**
+     * Checks whether there are no tasks waiting for the drain.
+     */
+    boolean isEmpty() {
+        return mQueue.isEmpty();
+    }
+
+// MARK: - Private Methods
+
+    private void scheduleDrain() {
+        if (mDrainScheduled.compareAndSet(false, true)) {
+            mPoster.execute(mDrainTask);
+        }
+    }
+
+    private void drain() {
+        mDrainScheduled.set(false);
+
+        final long limit = mSubmittedCount.get();
+        try {
+            Runnable runnable;
+            while (mDrainedCount < limit && (runnable = mQueue.poll()) != null) {
+                mDrainedCount++;
+                runnable.run();
+            }
+        }
+        finally {
+            // Tasks left behind by the limit or by a failed task need another drain
+            if (!mQueue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+    }
+
+// MARK: - Variables
+
+    private final Executor mPoster;
+
+    private final ConcurrentLinkedQueue<Runnable> mQueue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean mDrainScheduled = new AtomicBoolean(false);
+
+    private final AtomicLong mSubmittedCount = new AtomicLong();
+
+    // Accessed by the draining thread only
+    private long mDrainedCount = 0L;
+
+    private final Runnable mDrainTask = this::drain;
+}
@@ -0,0 +1,364 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Groups the background tasks of a screen or request, so they can be cancelled together.
+ * <p>
+ * Every task submitted through the scope, or through one of its child scopes, is tracked until
+ * it completes. {@link #cancel()} interrupts the running tasks, purges the queued ones from the
+ * worker queue and rejects any further submission. A child scope which is not needed anymore
+ * should be {@link #close() closed}, it is released by its parent once its tasks are done.
+ */
+public final class CancellationScope implements Executor
+{
+// MARK: - Construction
+
+    /**
+     * Creates a root scope over {@link ParallelWorkerThreadExecutor#defaultExecutor()}.
+     */
+    public CancellationScope() {
+        this(ParallelWorkerThreadExecutor.defaultExecutor());
+    }
+
+    public CancellationScope(@NonNull Executor executor) {
+        this(executor, null);
+    }
+
+    private CancellationScope(@NonNull Executor executor, @Nullable CancellationScope parent) {
+        if (executor == null) {
+            throw new NullPointerException("executor is null");
+        }
+        mExecutor = executor;
+        mParent = parent;
+    }
+
+    /**
+     * Creates a child scope over the same executor, cancelled together with this scope.
+     *
+     * @throws IllegalStateException if this scope is closed
+     */
+    public @NonNull CancellationScope newChildScope() {
+        if (mClosed.get()) {
+            throw new IllegalStateException("Scope is closed");
+        }
+
+        CancellationScope child = new CancellationScope(mExecutor, this);
+        mChildren.add(child);
+
+        // Drop the child which has been added after this scope was closed and possibly released
+        if (mClosed.get()) {
+            mChildren.remove(child);
+            detachIfDone();
+            throw new IllegalStateException("Scope is closed");
+        }
+        // Cancel the child which has been added after this scope was cancelled
+        if (mCancelled.get()) {
+            child.cancel();
+        }
+        return child;
+    }
+
+    /**
+     * Returns the scope of the task running on the current thread, if any.
+     */
+    public static @Nullable CancellationScope current() {
+        return sCurrentScope.get();
+    }
+
+// MARK: - Properties
+
+    public boolean isCancelled() {
+        return mCancelled.get();
+    }
+
+    public @Nullable CancellationScope getParent() {
+        return mParent;
+    }
+
+    /**
+     * Returns the number of tasks submitted to this scope, excluding the ones of child scopes.
+     */
+    public long getSubmittedCount() {
+        return mSubmittedCount.get();
+    }
+
+    public long getCompletedCount() {
+        return mCompletedCount.get();
+    }
+
+    /**
+     * Returns the number of tasks cancelled before they started, i.e. the saved work.
+     */
+    public long getSkippedCount() {
+        return mSkippedCount.get();
+    }
+
+    /**
+     * Returns the number of tasks interrupted while running.
+     */
+    public long getInterruptedCount() {
+        return mInterruptedCount.get();
+    }
+
+    /**
+     * Returns the number of submitted tasks which are not completed yet.
+     */
+    public int getActiveCount() {
+        return mTasks.size();
+    }
+
+    /**
+     * Returns the number of child scopes which are neither cancelled nor closed and done.
+     */
+    public int getChildCount() {
+        return mChildren.size();
+    }
+
+    public boolean isClosed() {
+        return mClosed.get();
+    }
+
+// MARK: - Methods
+
+    /**
+     * @throws RejectedExecutionException if this scope is cancelled
+     */
+    @Override
+    public void execute(@NonNull Runnable runnable) {
+        submit(runnable);
+    }
+
+    /**
+     * @throws RejectedExecutionException if this scope is cancelled
+     */
+    public @NonNull Future<?> submit(@NonNull Runnable runnable) {
+        if (runnable == null) {
+            throw new NullPointerException("runnable is null");
+        }
+        return schedule(new ScopedTask<Void>(runnable, null));
+    }
+
+    /**
+     * @throws RejectedExecutionException if this scope is cancelled
+     */
+    public @NonNull <T> Future<T> submit(@NonNull Callable<T> callable) {
+        if (callable == null) {
+            throw new NullPointerException("callable is null");
+        }
+        return schedule(new ScopedTask<>(callable));
+    }
+
+    /**
+     * Cancels this scope and its child scopes. Running tasks are interrupted and queued ones are
+     * purged from the worker queue.
+     *
+     * @return {@code true} if this call has cancelled the scope
+     */
+    public boolean cancel() {
+        if (!cancelTree()) {
+            return false;
+        }
+
+        if (mParent != null) {
+            mParent.mChildren.remove(this);
+        }
+        if (mExecutor instanceof ParallelWorkerThreadExecutor) {
+            ((ParallelWorkerThreadExecutor) mExecutor).purge();
+        }
+        return true;
+    }
+
+    /**
+     * Rejects any further submission, but lets the submitted tasks complete. The scope is released
+     * by its parent once the tasks of the scope and its child scopes are done.
+     */
+    public void close() {
+        if (mClosed.compareAndSet(false, true)) {
+            detachIfDone();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CancellationScope{" +
+                "cancelled=" + mCancelled.get() +
+                ", closed=" + mClosed.get() +
+                ", submitted=" + mSubmittedCount.get() +
+                ", completed=" + mCompletedCount.get() +
+                ", skipped=" + mSkippedCount.get() +
+                ", interrupted=" + mInterruptedCount.get() +
+                ", active=" + mTasks.size() +
+                '}';
+    }
+
+// MARK: - Private Methods
+
+    private boolean cancelTree() {
+        // Mark the whole tree first, an interrupted task would otherwise free its worker for the
+        // queued tasks of the scopes which have not been cancelled yet
+        if (!markCancelled()) {
+            return false;
+        }
+
+        cancelTasks();
+        return true;
+    }
+
+    private boolean markCancelled() {
+        if (!mCancelled.compareAndSet(false, true)) {
+            return false;
+        }
+
+        for (CancellationScope child : mChildren) {
+            child.markCancelled();
+        }
+        return true;
+    }
+
+    private void cancelTasks() {
+        for (ScopedTask<?> task : mTasks) {
+            task.cancel(true);
+        }
+        // The children share the executor, so the queue is purged once by the caller
+        for (CancellationScope child : mChildren) {
+            child.cancelTasks();
+        }
+    }
+
+    private void detachIfDone() {
+        if (mParent == null || !mClosed.get() || !mTasks.isEmpty() || !mChildren.isEmpty()) {
+            return;
+        }
+
+        // The parent may have been closed while waiting for this scope
+        if (mParent.mChildren.remove(this)) {
+            mParent.detachIfDone();
+        }
+    }
+
+    private @NonNull <T> Future<T> schedule(@NonNull ScopedTask<T> task) {
+        if (mCancelled.get()) {
+            throw new RejectedExecutionException("Scope is cancelled");
+        }
+        if (mClosed.get()) {
+            throw new RejectedExecutionException("Scope is closed");
+        }
+
+        mSubmittedCount.incrementAndGet();
+        mTasks.add(task);
+
+        // Cancel the task which has been added after this scope was cancelled
+        if (mCancelled.get()) {
+            task.cancel(true);
+            throw new RejectedExecutionException("Scope is cancelled");
+        }
+        // Drop the task which has been added after this scope was closed and possibly released
+        if (mClosed.get()) {
+            mTasks.remove(task);
+            detachIfDone();
+            throw new RejectedExecutionException("Scope is closed");
+        }
+
+        try {
+            mExecutor.execute(task);
+        }
+        catch (RuntimeException e) {
+            mTasks.remove(task);
+            detachIfDone();
+            throw e;
+        }
+        return task;
+    }
+
+// MARK: - Inner Types
+
+    private final class ScopedTask<T> extends FutureTask<T>
+    {
+        ScopedTask(@NonNull Callable<T> callable) {
+            super(callable);
+        }
+
+        ScopedTask(@NonNull Runnable runnable, @Nullable T result) {
+            super(runnable, result);
+        }
+
+        @Override
+        public void run() {
+            if (isDone()) {
+                return;
+            }
+            // The scope has been cancelled, but this task has not been reached yet
+            if (mCancelled.get()) {
+                cancel(false);
+                return;
+            }
+
+            CancellationScope previous = sCurrentScope.get();
+            sCurrentScope.set(CancellationScope.this);
+            mStarted.set(true);
+            try {
+                super.run();
+            }
+            finally {
+                sCurrentScope.set(previous);
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (!mTasks.remove(this)) {
+                return;
+            }
+
+            if (!isCancelled()) {
+                mCompletedCount.incrementAndGet();
+            }
+            else if (mStarted.get()) {
+                mInterruptedCount.incrementAndGet();
+            }
+            else {
+                mSkippedCount.incrementAndGet();
+            }
+            detachIfDone();
+        }
+
+        private final AtomicBoolean mStarted = new AtomicBoolean(false);
+    }
+
+// MARK: - Variables
+
+    private static final ThreadLocal<CancellationScope> sCurrentScope = new ThreadLocal<>();
+
+    private final Executor mExecutor;
+
+    private final CancellationScope mParent;
+
+    private final AtomicBoolean mCancelled = new AtomicBoolean(false);
+
+    private final AtomicBoolean mClosed = new AtomicBoolean(false);
+
+    private final Set<ScopedTask<?>> mTasks = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private final Set<CancellationScope> mChildren = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private final AtomicLong mSubmittedCount = new AtomicLong();
+
+    private final AtomicLong mCompletedCount = new AtomicLong();
+
+    private final AtomicLong mSkippedCount = new AtomicLong();
+
+    private final AtomicLong mInterruptedCount = new AtomicLong();
+}
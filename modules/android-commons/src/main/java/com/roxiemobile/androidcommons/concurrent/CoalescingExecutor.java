@@ -0,0 +1,270 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An executor decorator that debounces or throttles the tasks submitted for the same token.
+ * <p>
+ * A debouncing executor runs a task once the token has been quiet for the interval, a throttling
+ * executor runs at most one task per interval for the token. In both cases the latest submitted
+ * task wins, the superseded ones are dropped. The {@link Edge} selects whether the task opening
+ * the interval, the latest task at its end, or both are run.
+ * <p>
+ * The intervals are timed by a shared {@link TimerWheelScheduler}, not by a Handler post per
+ * task, so a burst of submissions costs a map lookup per task and one timeout per interval.
+ */
+public final class CoalescingExecutor implements Executor
+{
+// MARK: - Construction
+
+    private CoalescingExecutor(@NonNull Executor delegate, @NonNull ScheduledExecutorService timer, @NonNull Ticker ticker,
+            long interval, @NonNull TimeUnit unit, @NonNull Edge edge, boolean debounce) {
+        if (delegate == null || timer == null || ticker == null || unit == null || edge == null) {
+            throw new NullPointerException();
+        }
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval <= 0");
+        }
+
+        mDelegate = delegate;
+        mTimer = timer;
+        mTicker = ticker;
+        mIntervalNanos = unit.toNanos(interval);
+        mLeading = (edge != Edge.Trailing);
+        mTrailing = (edge != Edge.Leading);
+        mDebounce = debounce;
+    }
+
+    /**
+     * Returns an executor which runs the latest task once no task has been submitted for the same
+     * token during the given delay.
+     */
+    public static @NonNull CoalescingExecutor debounce(@NonNull Executor delegate, long delay, @NonNull TimeUnit unit) {
+        return debounce(delegate, delay, unit, Edge.Trailing);
+    }
+
+    public static @NonNull CoalescingExecutor debounce(@NonNull Executor delegate, long delay, @NonNull TimeUnit unit, @NonNull Edge edge) {
+        return new CoalescingExecutor(delegate, TimerWheelScheduler.shared(), Ticker.SYSTEM, delay, unit, edge, true);
+    }
+
+    public static @NonNull CoalescingExecutor debounce(@NonNull Executor delegate, @NonNull ScheduledExecutorService timer,
+            long delay, @NonNull TimeUnit unit, @NonNull Edge edge) {
+        return new CoalescingExecutor(delegate, timer, Ticker.SYSTEM, delay, unit, edge, true);
+    }
+
+    /**
+     * Returns a debouncing executor which reads the time from the given ticker, it must run at the
+     * same pace as the clock of the timer.
+     */
+    public static @NonNull CoalescingExecutor debounce(@NonNull Executor delegate, @NonNull ScheduledExecutorService timer,
+            @NonNull Ticker ticker, long delay, @NonNull TimeUnit unit, @NonNull Edge edge) {
+        return new CoalescingExecutor(delegate, timer, ticker, delay, unit, edge, true);
+    }
+
+    /**
+     * Returns an executor which runs at most one task per interval for the same token.
+     */
+    public static @NonNull CoalescingExecutor throttle(@NonNull Executor delegate, long interval, @NonNull TimeUnit unit) {
+        return throttle(delegate, interval, unit, Edge.Both);
+    }
+
+    public static @NonNull CoalescingExecutor throttle(@NonNull Executor delegate, long interval, @NonNull TimeUnit unit, @NonNull Edge edge) {
+        return new CoalescingExecutor(delegate, TimerWheelScheduler.shared(), Ticker.SYSTEM, interval, unit, edge, false);
+    }
+
+    public static @NonNull CoalescingExecutor throttle(@NonNull Executor delegate, @NonNull ScheduledExecutorService timer,
+            long interval, @NonNull TimeUnit unit, @NonNull Edge edge) {
+        return new CoalescingExecutor(delegate, timer, Ticker.SYSTEM, interval, unit, edge, false);
+    }
+
+    /**
+     * Returns a throttling executor which reads the time from the given ticker, it must run at the
+     * same pace as the clock of the timer.
+     */
+    public static @NonNull CoalescingExecutor throttle(@NonNull Executor delegate, @NonNull ScheduledExecutorService timer,
+            @NonNull Ticker ticker, long interval, @NonNull TimeUnit unit, @NonNull Edge edge) {
+        return new CoalescingExecutor(delegate, timer, ticker, interval, unit, edge, false);
+    }
+
+// MARK: - Properties
+
+    /**
+     * Returns the number of tokens with an open interval.
+     */
+    public int getActiveTokenCount() {
+        synchronized (mWindows) {
+            return mWindows.size();
+        }
+    }
+
+// MARK: - Methods
+
+    /**
+     * Submits the task for the default token.
+     */
+    @Override
+    public void execute(@NonNull Runnable runnable) {
+        execute(null, runnable);
+    }
+
+    /**
+     * Submits the task for the given token, the tasks of different tokens do not affect each other.
+     */
+    public void execute(@Nullable Object token, @NonNull Runnable runnable) {
+        if (runnable == null) {
+            throw new NullPointerException("runnable is null");
+        }
+
+        Object key = (token != null) ? token : DEFAULT_TOKEN;
+        Runnable leadingTask = null;
+
+        synchronized (mWindows) {
+            long now = mTicker.nanoTime();
+            Window window = mWindows.get(key);
+
+            if (window == null) {
+                window = new Window(key);
+                window.mDeadline = now + mIntervalNanos;
+                mWindows.put(key, window);
+
+                if (mLeading) {
+                    leadingTask = runnable;
+                }
+                else {
+                    window.mPendingTask = runnable;
+                }
+                schedule(window, mIntervalNanos);
+            }
+            else {
+                if (mTrailing) {
+                    window.mPendingTask = runnable;
+                }
+                // The timer checks the deadline when it fires, so the timeout is not rescheduled per task
+                if (mDebounce) {
+                    window.mDeadline = now + mIntervalNanos;
+                }
+            }
+        }
+
+        if (leadingTask != null) {
+            mDelegate.execute(leadingTask);
+        }
+    }
+
+    /**
+     * Drops the pending task of the given token and closes its interval.
+     */
+    public void cancel(@Nullable Object token) {
+        Window window;
+        synchronized (mWindows) {
+            window = mWindows.remove((token != null) ? token : DEFAULT_TOKEN);
+        }
+
+        if (window != null && window.mTimeout != null) {
+            window.mTimeout.cancel(false);
+        }
+    }
+
+// MARK: - Private Methods
+
+    // Must be called under the lock
+    private void schedule(@NonNull Window window, long delayNanos) {
+        window.mTimeout = mTimer.schedule(window, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void onTimeout(@NonNull Window window) {
+        Runnable trailingTask;
+        synchronized (mWindows) {
+            // The window has been cancelled
+            if (mWindows.get(window.mToken) != window) {
+                return;
+            }
+
+            long now = mTicker.nanoTime();
+            long remaining = window.mDeadline - now;
+            if (remaining > 0) {
+                schedule(window, remaining);
+                return;
+            }
+
+            trailingTask = window.mPendingTask;
+            window.mPendingTask = null;
+
+            // Keep a throttled token closed for another interval after the trailing task
+            if (trailingTask != null && !mDebounce) {
+                window.mDeadline = now + mIntervalNanos;
+                schedule(window, mIntervalNanos);
+            }
+            else {
+                mWindows.remove(window.mToken);
+            }
+        }
+
+        if (trailingTask != null) {
+            mDelegate.execute(trailingTask);
+        }
+    }
+
+// MARK: - Inner Types
+
+    public enum Edge
+    {
+        // Run the task which opens the interval
+        Leading,
+        // Run the latest task when the interval ends
+        Trailing,
+        // Run both, the trailing one only if another task has been submitted during the interval
+        Both
+    }
+
+    private final class Window implements Runnable
+    {
+        Window(@NonNull Object token) {
+            mToken = token;
+        }
+
+        @Override
+        public void run() {
+            onTimeout(this);
+        }
+
+        final Object mToken;
+
+        // Guarded by mWindows
+        Runnable mPendingTask;
+
+        long mDeadline;
+
+        Future<?> mTimeout;
+    }
+
+// MARK: - Constants
+
+    private static final Object DEFAULT_TOKEN = new Object();
+
+// MARK: - Variables
+
+    private final Executor mDelegate;
+
+    private final ScheduledExecutorService mTimer;
+
+    private final Ticker mTicker;
+
+    private final long mIntervalNanos;
+
+    private final boolean mLeading;
+
+    private final boolean mTrailing;
+
+    private final boolean mDebounce;
+
+    private final Map<Object, Window> mWindows = new HashMap<>();
+}
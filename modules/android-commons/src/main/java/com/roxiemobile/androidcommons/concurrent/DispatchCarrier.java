@@ -0,0 +1,190 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A reusable carrier of a blocking hand-off to another thread, it replaces the FutureTask allocated
+ * per call by {@link ThreadUtils#runOnUiThreadBlocking}.
+ * <p>
+ * Every thread owns a single carrier since it cannot wait for two hand-offs at once. The ownership
+ * rules keep a result from leaking into the next hand-off:
+ * <ul>
+ * <li>the waiting thread arms its carrier with {@link #obtain} and posts it;</li>
+ * <li>the target thread runs the task, stores the outcome, drops the task and wakes the waiter;</li>
+ * <li>the waiting thread reads the outcome and hands the carrier back with {@link #release}, which
+ * clears the outcome;</li>
+ * <li>a waiter that stops waiting before the task has run abandons the carrier, the target thread
+ * drops the outcome and the carrier is never reused.</li>
+ * </ul>
+ */
+final class DispatchCarrier implements Runnable, Future<Object>
+{
+// MARK: - Construction
+
+    private DispatchCarrier() {
+        // Do nothing
+    }
+
+    /**
+     * Arms the carrier of the calling thread with the task, exactly one of the arguments is non-null.
+     */
+    static @NonNull DispatchCarrier obtain(@Nullable Runnable runnable, @Nullable Callable<?> callable) {
+        DispatchCarrier carrier = sCarrier.get();
+        if (carrier == null) {
+            carrier = new DispatchCarrier();
+            sCarrier.set(carrier);
+        }
+
+        carrier.mRunnable = runnable;
+        carrier.mCallable = callable;
+        carrier.mWaiter = Thread.currentThread();
+        carrier.mState.set(STATE_PENDING);
+        return carrier;
+    }
+
+// MARK: - Methods
+
+    /**
+     * Runs the task on the target thread and wakes the waiting thread.
+     */
+    @Override
+    public void run() {
+        Runnable runnable = mRunnable;
+        Callable<?> callable = mCallable;
+        mRunnable = null;
+        mCallable = null;
+
+        Object result = null;
+        Throwable failure = null;
+        try {
+            if (callable != null) {
+                result = callable.call();
+            }
+            else if (runnable != null) {
+                runnable.run();
+            }
+        }
+        catch (Throwable e) {
+            failure = e;
+        }
+
+        mResult = result;
+        mFailure = failure;
+
+        Thread waiter = mWaiter;
+        if (!mState.compareAndSet(STATE_PENDING, STATE_DONE)) {
+            // Nobody waits for the outcome any more
+            mResult = null;
+            mFailure = null;
+            return;
+        }
+        LockSupport.unpark(waiter);
+    }
+
+    /**
+     * Hands the carrier back to its thread once the waiter is done with it.
+     */
+    void release() {
+        if (mState.compareAndSet(STATE_PENDING, STATE_ABANDONED)) {
+            // The task is still queued, the carrier must not be armed again
+            mWaiter = null;
+            sCarrier.remove();
+            return;
+        }
+
+        mResult = null;
+        mFailure = null;
+        mWaiter = null;
+        mState.set(STATE_IDLE);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return mState.get() == STATE_DONE;
+    }
+
+    @Override
+    public Object get() throws InterruptedException, ExecutionException {
+        while (!isDone()) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return report();
+    }
+
+    @Override
+    public Object get(long timeout, @NonNull TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isDone()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+
+            LockSupport.parkNanos(this, remaining);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return report();
+    }
+
+// MARK: - Private Methods
+
+    private Object report() throws ExecutionException {
+        Throwable failure = mFailure;
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return mResult;
+    }
+
+// MARK: - Constants
+
+    private static final int STATE_IDLE = 0;
+
+    private static final int STATE_PENDING = 1;
+
+    private static final int STATE_DONE = 2;
+
+    private static final int STATE_ABANDONED = 3;
+
+// MARK: - Variables
+
+    private static final ThreadLocal<DispatchCarrier> sCarrier = new ThreadLocal<>();
+
+    private final AtomicInteger mState = new AtomicInteger(STATE_IDLE);
+
+    // Written by the waiting thread before the carrier is posted, published by the post
+    private Runnable mRunnable;
+
+    private Callable<?> mCallable;
+
+    private volatile Thread mWaiter;
+
+    // Written by the target thread before the state turns done, published by the state
+    private Object mResult;
+
+    private Throwable mFailure;
+}
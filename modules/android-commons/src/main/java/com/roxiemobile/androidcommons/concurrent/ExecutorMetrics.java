@@ -0,0 +1,238 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records how long the tasks of an executor wait in its queue and how long they run.
+ * <p>
+ * An executor has no metrics until they are enabled, in that state the only cost per task is one
+ * volatile read. Use {@link #snapshot()} to read the values or register a {@link Listener} to
+ * receive every finished task.
+ */
+public final class ExecutorMetrics
+{
+// MARK: - Construction
+
+    ExecutorMetrics(@NonNull String executorName, @Nullable QueueDepthSource queueDepthSource) {
+        this(executorName, queueDepthSource, Ticker.SYSTEM);
+    }
+
+    @VisibleForTesting
+    ExecutorMetrics(@NonNull String executorName, @Nullable QueueDepthSource queueDepthSource, @NonNull Ticker ticker) {
+        mExecutorName = executorName;
+        mQueueDepthSource = queueDepthSource;
+        mTicker = ticker;
+    }
+
+// MARK: - Properties
+
+    public @NonNull String getExecutorName() {
+        return mExecutorName;
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        mListener = listener;
+    }
+
+// MARK: - Methods
+
+    /**
+     * Returns a consistent enough copy of the current values.
+     */
+    public @NonNull Snapshot snapshot() {
+        int queueDepth = (mQueueDepthSource != null) ? mQueueDepthSource.getQueueDepth() : mQueuedCount.get();
+        return new Snapshot(mExecutorName, Math.max(0, queueDepth), Math.max(0, mActiveCount.get()),
+                mCompletedCount.get(), mWaitTime.copy(), mRunTime.copy());
+    }
+
+    /**
+     * Resets the histograms and the completed task counter.
+     */
+    public void reset() {
+        mWaitTime.reset();
+        mRunTime.reset();
+        mCompletedCount.set(0L);
+    }
+
+// MARK: - Internal Methods
+
+    /**
+     * Counts a task which has been accepted by the executor, call it only once the task cannot
+     * be rejected anymore.
+     */
+    void onEnqueued() {
+        mQueuedCount.incrementAndGet();
+    }
+
+    /**
+     * Uncounts an accepted task which is dropped without running, e.g. by {@code shutdownNow()}.
+     */
+    void onDropped() {
+        mQueuedCount.decrementAndGet();
+    }
+
+    /**
+     * Wraps the given task so its wait and run times are recorded. The task is not counted as
+     * queued until {@link #onEnqueued()} is called.
+     */
+    @NonNull Runnable wrap(@NonNull Runnable runnable) {
+        return new TimedTask(this, runnable);
+    }
+
+    void run(@NonNull Runnable runnable, long enqueueTime) {
+        long startTime = mTicker.nanoTime();
+        // An executor with a queue depth source does not count its queued tasks
+        if (mQueueDepthSource == null) {
+            mQueuedCount.decrementAndGet();
+        }
+        mActiveCount.incrementAndGet();
+        try {
+            runnable.run();
+        }
+        finally {
+            long finishTime = mTicker.nanoTime();
+            mActiveCount.decrementAndGet();
+            onFinished(startTime - enqueueTime, finishTime - startTime);
+        }
+    }
+
+    private void onFinished(long waitNanos, long runNanos) {
+        mWaitTime.record(waitNanos);
+        mRunTime.record(runNanos);
+        mCompletedCount.incrementAndGet();
+
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onTaskFinished(mExecutorName, waitNanos, runNanos);
+        }
+    }
+
+// MARK: - Inner Types
+
+    public interface Listener
+    {
+        /**
+         * Called on the executing thread after every task, keep it cheap.
+         */
+        void onTaskFinished(@NonNull String executorName, long waitNanos, long runNanos);
+    }
+
+    /**
+     * Supplies the live queue depth of an executor which can drop tasks without running them.
+     */
+    interface QueueDepthSource
+    {
+        int getQueueDepth();
+    }
+
+    public static final class Snapshot
+    {
+        Snapshot(@NonNull String executorName, int queueDepth, int activeCount, long completedCount,
+                 @NonNull LatencyHistogram waitTime, @NonNull LatencyHistogram runTime) {
+            mExecutorName = executorName;
+            mQueueDepth = queueDepth;
+            mActiveCount = activeCount;
+            mCompletedCount = completedCount;
+            mWaitTime = waitTime;
+            mRunTime = runTime;
+        }
+
+        public @NonNull String getExecutorName() {
+            return mExecutorName;
+        }
+
+        /**
+         * Returns the number of tasks waiting to be run.
+         */
+        public int getQueueDepth() {
+            return mQueueDepth;
+        }
+
+        /**
+         * Returns the number of threads running a task.
+         */
+        public int getActiveCount() {
+            return mActiveCount;
+        }
+
+        public long getCompletedCount() {
+            return mCompletedCount;
+        }
+
+        /**
+         * Returns the time between submission and start of the tasks.
+         */
+        public @NonNull LatencyHistogram getWaitTime() {
+            return mWaitTime;
+        }
+
+        /**
+         * Returns the time the tasks have been running for.
+         */
+        public @NonNull LatencyHistogram getRunTime() {
+            return mRunTime;
+        }
+
+        @Override
+        public String toString() {
+            return "ExecutorMetrics.Snapshot{" +
+                    "executor=" + mExecutorName +
+                    ", queueDepth=" + mQueueDepth +
+                    ", activeCount=" + mActiveCount +
+                    ", completed=" + mCompletedCount +
+                    ", wait=" + mWaitTime +
+                    ", run=" + mRunTime +
+                    '}';
+        }
+
+        private final String mExecutorName;
+        private final int mQueueDepth;
+        private final int mActiveCount;
+        private final long mCompletedCount;
+        private final LatencyHistogram mWaitTime;
+        private final LatencyHistogram mRunTime;
+    }
+
+    private static final class TimedTask implements Runnable
+    {
+        TimedTask(@NonNull ExecutorMetrics metrics, @NonNull Runnable runnable) {
+            mMetrics = metrics;
+            mRunnable = runnable;
+            mEnqueueTime = metrics.mTicker.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            mMetrics.run(mRunnable, mEnqueueTime);
+        }
+
+        private final ExecutorMetrics mMetrics;
+        private final Runnable mRunnable;
+        private final long mEnqueueTime;
+    }
+
+// MARK: - Variables
+
+    private final String mExecutorName;
+
+    private final QueueDepthSource mQueueDepthSource;
+
+    private final Ticker mTicker;
+
+    private volatile Listener mListener;
+
+    private final AtomicInteger mQueuedCount = new AtomicInteger();
+
+    private final AtomicInteger mActiveCount = new AtomicInteger();
+
+    private final AtomicLong mCompletedCount = new AtomicLong();
+
+    private final LatencyHistogram mWaitTime = new LatencyHistogram();
+
+    private final LatencyHistogram mRunTime = new LatencyHistogram();
+}
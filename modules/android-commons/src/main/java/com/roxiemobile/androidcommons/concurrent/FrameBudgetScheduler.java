@@ -0,0 +1,202 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.view.Choreographer;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An executor that runs its tasks on the main thread in time slices, one slice per frame.
+ * <p>
+ * Queued tasks are run from a {@link Choreographer} frame callback until the frame budget is
+ * spent, the remaining tasks are deferred to the next frame. At least one task is run per frame,
+ * so a slice that exceeds the budget is reported as an overrun.
+ */
+public final class FrameBudgetScheduler implements Executor
+{
+// MARK: - Construction
+
+    public static FrameBudgetScheduler shared() {
+        return SingletonHolder.SHARED_INSTANCE;
+    }
+
+    private static class SingletonHolder {
+        private static final FrameBudgetScheduler SHARED_INSTANCE =
+                new FrameBudgetScheduler(DEFAULT_FRAME_BUDGET_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public FrameBudgetScheduler(long budget, @NonNull TimeUnit unit) {
+        this(budget, unit, Ticker.SYSTEM, null);
+    }
+
+    /**
+     * Creates a scheduler which measures the slices with the given ticker and hands the frame task
+     * to the given executor instead of a {@link Choreographer} frame callback.
+     */
+    @VisibleForTesting
+    FrameBudgetScheduler(long budget, @NonNull TimeUnit unit, @NonNull Ticker ticker, @Nullable Executor frameScheduler) {
+        if (budget <= 0 || unit == null) {
+            throw new IllegalArgumentException("Invalid budget");
+        }
+        if (ticker == null) {
+            throw new NullPointerException("ticker is null");
+        }
+        mBudgetNanos = unit.toNanos(budget);
+        mTicker = ticker;
+        mFrameScheduler = frameScheduler;
+    }
+
+// MARK: - Properties
+
+    public long getBudgetNanos() {
+        return mBudgetNanos;
+    }
+
+    public void setOverrunListener(@Nullable OverrunListener listener) {
+        mOverrunListener = listener;
+    }
+
+    /**
+     * Returns the number of frames in which tasks have been run.
+     */
+    public long getFrameCount() {
+        return mFrameCount.get();
+    }
+
+    /**
+     * Returns the number of frames in which the budget has been exceeded.
+     */
+    public long getOverrunCount() {
+        return mOverrunCount.get();
+    }
+
+    /**
+     * Returns the number of frames which left tasks for the next frame.
+     */
+    public long getDeferredFrameCount() {
+        return mDeferredFrameCount.get();
+    }
+
+// MARK: - Methods
+
+    @Override
+    public void execute(@NonNull Runnable runnable) {
+        if (runnable == null) {
+            throw new NullPointerException("runnable is null");
+        }
+
+        mQueue.offer(runnable);
+        if (mFrameScheduled.compareAndSet(false, true)) {
+            if (mFrameScheduler != null) {
+                mFrameScheduler.execute(mFrameTask);
+            }
+            else {
+                MainThreadExecutor.shared().execute(this::postFrameCallback);
+            }
+        }
+    }
+
+// MARK: - Private Methods
+
+    // Must be called on the main thread
+    private void postFrameCallback() {
+        if (mFrameScheduler != null) {
+            mFrameScheduler.execute(mFrameTask);
+        }
+        else {
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+    }
+
+    private void doFrame() {
+        final long startTime = mTicker.nanoTime();
+        long elapsed = 0L;
+        int taskCount = 0;
+
+        Runnable runnable;
+        try {
+            while ((taskCount == 0 || elapsed < mBudgetNanos) && (runnable = mQueue.poll()) != null) {
+                taskCount++;
+                runnable.run();
+                elapsed = mTicker.nanoTime() - startTime;
+            }
+        }
+        finally {
+            onFrameFinished(elapsed, taskCount);
+        }
+    }
+
+    private void onFrameFinished(long elapsed, int taskCount) {
+        if (taskCount > 0) {
+            mFrameCount.incrementAndGet();
+        }
+
+        if (elapsed > mBudgetNanos) {
+            mOverrunCount.incrementAndGet();
+
+            OverrunListener listener = mOverrunListener;
+            if (listener != null) {
+                listener.onBudgetOverrun(elapsed, mBudgetNanos, taskCount);
+            }
+        }
+
+        if (mQueue.isEmpty()) {
+            mFrameScheduled.set(false);
+
+            // A task could have been queued after the check above, it must not be left behind
+            if (mQueue.isEmpty() || !mFrameScheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+        else {
+            mDeferredFrameCount.incrementAndGet();
+        }
+        postFrameCallback();
+    }
+
+// MARK: - Inner Types
+
+    public interface OverrunListener
+    {
+        /**
+         * Called on the main thread after a frame in which the tasks have run for longer than
+         * the budget.
+         */
+        void onBudgetOverrun(long elapsedNanos, long budgetNanos, int taskCount);
+    }
+
+// MARK: - Constants
+
+    // Half of a 60 Hz frame, the other half is left for input, layout and drawing
+    public static final long DEFAULT_FRAME_BUDGET_MILLIS = 8L;
+
+// MARK: - Variables
+
+    private final long mBudgetNanos;
+
+    private final Ticker mTicker;
+
+    private final Executor mFrameScheduler;
+
+    private volatile OverrunListener mOverrunListener;
+
+    private final ConcurrentLinkedQueue<Runnable> mQueue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean mFrameScheduled = new AtomicBoolean(false);
+
+    private final AtomicLong mFrameCount = new AtomicLong();
+
+    private final AtomicLong mOverrunCount = new AtomicLong();
+
+    private final AtomicLong mDeferredFrameCount = new AtomicLong();
+
+    private final Runnable mFrameTask = this::doFrame;
+
+    private final Choreographer.FrameCallback mFrameCallback = frameTimeNanos -> doFrame();
+}
@@ -0,0 +1,236 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.annotation.NonNull;
+import android.support.annotation.VisibleForTesting;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An executor that runs its tasks on the main thread while its Looper is idle.
+ * <p>
+ * Queued tasks are run from a {@link MessageQueue.IdleHandler} in slices: every time the Looper
+ * runs out of messages the tasks are run in FIFO order until the slice budget is spent. Since the
+ * Looper runs its idle handlers once per idle period, a slice that leaves tasks behind posts an
+ * empty message, so the next slice runs as soon as the Looper is idle again. A task
+ * that has waited for longer than the maximum deferral is forced to run even if the Looper never
+ * gets idle, so the work is delayed but never lost.
+ */
+public final class IdleExecutor implements Executor
+{
+// MARK: - Construction
+
+    public static IdleExecutor shared() {
+        return SingletonHolder.SHARED_INSTANCE;
+    }
+
+    private static class SingletonHolder {
+        private static final IdleExecutor SHARED_INSTANCE = new IdleExecutor(
+                DEFAULT_SLICE_BUDGET_MILLIS, DEFAULT_MAX_DEFERRAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public IdleExecutor(long sliceBudget, long maxDeferral, @NonNull TimeUnit unit) {
+        this(sliceBudget, maxDeferral, unit, Ticker.SYSTEM, handler -> Looper.myQueue().addIdleHandler(handler));
+    }
+
+    /**
+     * Registers the idle handler with the given queue instead of the MessageQueue of the main thread.
+     */
+    @VisibleForTesting
+    IdleExecutor(long sliceBudget, long maxDeferral, @NonNull TimeUnit unit, @NonNull Ticker ticker, @NonNull IdleQueue idleQueue) {
+        if (sliceBudget <= 0 || maxDeferral <= 0 || unit == null) {
+            throw new IllegalArgumentException("Invalid budget or deferral");
+        }
+        if (ticker == null || idleQueue == null) {
+            throw new NullPointerException("ticker or idleQueue is null");
+        }
+        mSliceBudgetNanos = unit.toNanos(sliceBudget);
+        mMaxDeferralNanos = unit.toNanos(maxDeferral);
+        mTicker = ticker;
+        mIdleQueue = idleQueue;
+    }
+
+// MARK: - Properties
+
+    /**
+     * Returns the number of idle slices in which tasks have been run.
+     */
+    public long getSliceCount() {
+        return mSliceCount.get();
+    }
+
+    /**
+     * Returns the number of tasks run by the idle handler.
+     */
+    public long getIdleTaskCount() {
+        return mIdleTaskCount.get();
+    }
+
+    /**
+     * Returns the number of tasks forced to run by the maximum deferral.
+     */
+    public long getForcedTaskCount() {
+        return mForcedTaskCount.get();
+    }
+
+// MARK: - Methods
+
+    @Override
+    public void execute(@NonNull Runnable runnable) {
+        if (runnable == null) {
+            throw new NullPointerException("runnable is null");
+        }
+
+        mQueue.offer(new IdleTask(runnable, mTicker.nanoTime()));
+        if (mRegistered.compareAndSet(false, true)) {
+            MainThreadExecutor.shared().execute(this::register);
+        }
+
+        // The idle handler can stay registered after the last deadline has found the queue empty
+        scheduleDeadline();
+    }
+
+// MARK: - Private Methods
+
+    // Must be called on the main thread
+    private void register() {
+        mIdleQueue.addIdleHandler(mIdleHandler);
+    }
+
+    private void scheduleDeadline() {
+        IdleTask task = mQueue.peek();
+        if (task == null || !mDeadlineScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        long remaining = Math.max(0L, task.mEnqueueTime + mMaxDeferralNanos - mTicker.nanoTime());
+        ThreadUtils.postOnUiThreadDelayed(mDeadlineCheck, TimeUnit.NANOSECONDS.toMillis(remaining) + 1);
+    }
+
+    private boolean onIdle() {
+        final long startTime = mTicker.nanoTime();
+        long elapsed = 0L;
+        int taskCount = 0;
+
+        boolean completed = false;
+        IdleTask task;
+        try {
+            while ((taskCount == 0 || elapsed < mSliceBudgetNanos) && (task = mQueue.poll()) != null) {
+                taskCount++;
+                task.mRunnable.run();
+                elapsed = mTicker.nanoTime() - startTime;
+            }
+            completed = true;
+        }
+        finally {
+            if (taskCount > 0) {
+                mSliceCount.incrementAndGet();
+                mIdleTaskCount.addAndGet(taskCount);
+            }
+
+            // The MessageQueue removes a throwing idle handler, register it again with a new message
+            if (!completed) {
+                mRegistered.set(false);
+                if (!mQueue.isEmpty() && mRegistered.compareAndSet(false, true)) {
+                    ThreadUtils.postOnUiThread(this::register);
+                }
+            }
+        }
+
+        if (mQueue.isEmpty()) {
+            mRegistered.set(false);
+
+            // A task could have been queued after the check above, keep the handler for it
+            if (mQueue.isEmpty() || !mRegistered.compareAndSet(false, true)) {
+                return false;
+            }
+        }
+
+        // The handler is not run again in this idle period, a message ends it
+        ThreadUtils.postOnUiThread(WAKE_UP);
+        return true;
+    }
+
+    private void onDeadline() {
+        mDeadlineScheduled.set(false);
+
+        try {
+            IdleTask task;
+            long now = mTicker.nanoTime();
+            while ((task = mQueue.peek()) != null && (now - task.mEnqueueTime) >= mMaxDeferralNanos) {
+                mQueue.poll();
+                mForcedTaskCount.incrementAndGet();
+                task.mRunnable.run();
+            }
+        }
+        finally {
+            // A throwing task must not leave the tasks behind it without a deadline
+            scheduleDeadline();
+        }
+    }
+
+// MARK: - Inner Types
+
+    /**
+     * The queue the idle handler is registered with, the MessageQueue of the main thread.
+     */
+    @VisibleForTesting
+    interface IdleQueue
+    {
+        void addIdleHandler(@NonNull MessageQueue.IdleHandler handler);
+    }
+
+    private static final class IdleTask
+    {
+        IdleTask(@NonNull Runnable runnable, long enqueueTime) {
+            mRunnable = runnable;
+            mEnqueueTime = enqueueTime;
+        }
+
+        final Runnable mRunnable;
+
+        final long mEnqueueTime;
+    }
+
+// MARK: - Constants
+
+    // A slice short enough not to delay the input event that arrives while it runs
+    public static final long DEFAULT_SLICE_BUDGET_MILLIS = 4L;
+
+    public static final long DEFAULT_MAX_DEFERRAL_MILLIS = 5000L;
+
+    private static final Runnable WAKE_UP = () -> {
+        // Do nothing
+    };
+
+// MARK: - Variables
+
+    private final long mSliceBudgetNanos;
+
+    private final long mMaxDeferralNanos;
+
+    private final Ticker mTicker;
+
+    private final IdleQueue mIdleQueue;
+
+    private final ConcurrentLinkedQueue<IdleTask> mQueue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean mRegistered = new AtomicBoolean(false);
+
+    private final AtomicBoolean mDeadlineScheduled = new AtomicBoolean(false);
+
+    private final AtomicLong mSliceCount = new AtomicLong();
+
+    private final AtomicLong mIdleTaskCount = new AtomicLong();
+
+    private final AtomicLong mForcedTaskCount = new AtomicLong();
+
+    private final MessageQueue.IdleHandler mIdleHandler = this::onIdle;
+
+    private final Runnable mDeadlineCheck = this::onDeadline;
+}
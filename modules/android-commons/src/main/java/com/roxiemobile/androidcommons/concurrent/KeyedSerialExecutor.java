@@ -0,0 +1,229 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+
+import com.roxiemobile.androidcommons.logging.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * An executor that runs the tasks submitted for the same key one at a time in submission order,
+ * while the tasks of different keys run in parallel on the delegate executor.
+ * <p>
+ * Every key with pending tasks owns a FIFO mailbox which is drained by one delegate task at a
+ * time, no threads are dedicated to keys. A mailbox is removed as soon as it runs empty, so the
+ * memory used depends on the number of keys with pending work only.
+ *
+ * @param <K> The type of the keys, must implement {@code equals()} and {@code hashCode()}
+ */
+public final class KeyedSerialExecutor<K>
+{
+// MARK: - Construction
+
+    /**
+     * Creates an executor that runs the tasks on {@link ParallelWorkerThreadExecutor#defaultExecutor()}.
+     */
+    public KeyedSerialExecutor() {
+        this(ParallelWorkerThreadExecutor.defaultExecutor());
+    }
+
+    public KeyedSerialExecutor(@NonNull Executor delegate) {
+        if (delegate == null) {
+            throw new NullPointerException("delegate is null");
+        }
+        mDelegate = delegate;
+    }
+
+// MARK: - Methods
+
+    /**
+     * Executes the given task after all tasks previously submitted for the same key.
+     *
+     * @throws RejectedExecutionException if the delegate rejects the key, the tasks other threads
+     *                                    have queued for it meanwhile are dropped as well and the
+     *                                    futures among them are cancelled
+     */
+    public void execute(@NonNull K key, @NonNull Runnable runnable) {
+        if (key == null || runnable == null) {
+            throw new NullPointerException();
+        }
+
+        while (true) {
+            Mailbox mailbox = mMailboxes.get(key);
+            if (mailbox == null) {
+                Mailbox newMailbox = new Mailbox(key);
+                mailbox = mMailboxes.putIfAbsent(key, newMailbox);
+                if (mailbox == null) {
+                    mailbox = newMailbox;
+                }
+            }
+
+            boolean schedule;
+            synchronized (mailbox) {
+                // The mailbox has been removed from the map in the meantime, use a new one
+                if (mailbox.mRetired) {
+                    continue;
+                }
+
+                mailbox.mTasks.addLast(runnable);
+                schedule = !mailbox.mScheduled;
+                mailbox.mScheduled = true;
+            }
+
+            if (schedule) {
+                schedule(mailbox, runnable);
+            }
+            return;
+        }
+    }
+
+    /**
+     * Returns an executor which submits all its tasks under the given key.
+     */
+    public @NonNull Executor forKey(@NonNull final K key) {
+        if (key == null) {
+            throw new NullPointerException("key is null");
+        }
+        return runnable -> execute(key, runnable);
+    }
+
+    /**
+     * Returns the number of keys that have pending or running tasks.
+     */
+    public int getActiveKeyCount() {
+        return mMailboxes.size();
+    }
+
+// MARK: - Private Methods
+
+    private void schedule(@NonNull Mailbox mailbox, @NonNull Runnable runnable) {
+        try {
+            mDelegate.execute(mailbox);
+        }
+        catch (RejectedExecutionException e) {
+            List<Runnable> dropped;
+            synchronized (mailbox) {
+                // Tasks queued behind this one by other threads have no drain to run them either
+                dropped = new ArrayList<>(mailbox.mTasks);
+                mailbox.mTasks.clear();
+                mailbox.mScheduled = false;
+                retireIfEmpty(mailbox);
+            }
+
+            // Don't leave the callers waiting on a future that will never be completed
+            for (Runnable task : dropped) {
+                if (task != runnable && task instanceof Future) {
+                    ((Future<?>) task).cancel(false);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private void retireIfEmpty(@NonNull Mailbox mailbox) {
+        if (mailbox.mTasks.isEmpty() && !mailbox.mScheduled) {
+            mailbox.mRetired = true;
+            mMailboxes.remove(mailbox.mKey, mailbox);
+        }
+    }
+
+    private void drain(@NonNull Mailbox mailbox) {
+        Throwable failure = null;
+        boolean drainInline;
+        do {
+            drainInline = false;
+
+            Runnable task;
+            synchronized (mailbox) {
+                task = mailbox.mTasks.pollFirst();
+            }
+
+            // Hand the mailbox over before the failure leaves the thread, otherwise the key stays scheduled forever
+            if (task != null) {
+                try {
+                    task.run();
+                }
+                catch (Throwable e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                    else {
+                        Logger.e(TAG, "Task has failed while the mailbox was drained inline", e);
+                    }
+                }
+            }
+
+            boolean reschedule;
+            synchronized (mailbox) {
+                reschedule = !mailbox.mTasks.isEmpty();
+                if (!reschedule) {
+                    mailbox.mScheduled = false;
+                    retireIfEmpty(mailbox);
+                }
+            }
+
+            // One task per delegate run keeps a busy key from holding a worker thread
+            if (reschedule) {
+                try {
+                    mDelegate.execute(mailbox);
+                }
+                catch (RejectedExecutionException e) {
+                    // The delegate is saturated, keep draining on the current thread
+                    drainInline = true;
+                }
+            }
+        }
+        while (drainInline);
+
+        if (failure != null) {
+            rethrow(failure);
+        }
+    }
+
+    private static void rethrow(@NonNull Throwable failure) {
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw new RuntimeException(failure);
+    }
+
+// MARK: - Inner Types
+
+    private final class Mailbox implements Runnable
+    {
+        Mailbox(@NonNull K key) {
+            mKey = key;
+        }
+
+        @Override
+        public void run() {
+            drain(this);
+        }
+
+        private final K mKey;
+        private final ArrayDeque<Runnable> mTasks = new ArrayDeque<>(2);
+
+        // Guarded by this
+        private boolean mScheduled = false;
+        private boolean mRetired = false;
+    }
+
+// MARK: - Constants
+
+    private static final String TAG = KeyedSerialExecutor.class.getSimpleName();
+
+// MARK: - Variables
+
+    private final Executor mDelegate;
+
+    private final ConcurrentHashMap<K, Mailbox> mMailboxes = new ConcurrentHashMap<>();
+}
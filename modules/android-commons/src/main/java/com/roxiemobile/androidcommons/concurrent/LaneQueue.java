@@ -0,0 +1,366 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A blocking queue that keeps a separate bounded FIFO lane for every task priority.
+ * <p>
+ * Tasks are taken from the highest priority lane that is not empty. A task that has waited in a
+ * lower priority lane for longer than the aging interval is taken first, so the lower priority
+ * lanes cannot starve. Tasks that are not {@link PrioritizedTask}s go to the normal lane.
+ */
+final class LaneQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable>
+{
+// MARK: - Construction
+
+    @SuppressWarnings("unchecked")
+    LaneQueue(int laneCapacity, long agingInterval, @NonNull TimeUnit unit) {
+        if (laneCapacity < 1) {
+            throw new IllegalArgumentException("laneCapacity < 1");
+        }
+
+        mLaneCapacity = laneCapacity;
+        mAgingNanos = unit.toNanos(agingInterval);
+        mLanes = new ArrayDeque[PrioritizedTask.LANE_COUNT];
+        for (int idx = 0; idx < mLanes.length; ++idx) {
+            mLanes[idx] = new ArrayDeque<>();
+        }
+    }
+
+// MARK: - Methods
+
+    @Override
+    public boolean offer(@NonNull Runnable runnable) {
+        checkNotNull(runnable);
+
+        final ReentrantLock lock = mLock;
+        lock.lock();
+        try {
+            return enqueue(runnable);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(@NonNull Runnable runnable, long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        checkNotNull(runnable);
+
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = mLock;
+        lock.lockInterruptibly();
+        try {
+            while (!enqueue(runnable)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = mNotFull.awaitNanos(nanos);
+            }
+            return true;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(@NonNull Runnable runnable) throws InterruptedException {
+        checkNotNull(runnable);
+
+        final ReentrantLock lock = mLock;
+        lock.lockInterruptibly();
+        try {
+            while (!enqueue(runnable)) {
+                mNotFull.await();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public @Nullable Runnable poll() {
+        final ReentrantLock lock = mLock;
+        lock.lock();
+        try {
+            return (mCount > 0) ? dequeue() : null;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public @Nullable Runnable poll(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = mLock;
+        lock.lockInterruptibly();
+        try {
+            while (mCount == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = mNotEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public @NonNull Runnable take() throws InterruptedException {
+        final ReentrantLock lock = mLock;
+        lock.lockInterruptibly();
+        try {
+            while (mCount == 0) {
+                mNotEmpty.await();
+            }
+            return dequeue();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public @Nullable Runnable peek() {
+        final ReentrantLock lock = mLock;
+        lock.lock();
+        try {
+            int lane = selectLane(mLanes, System.nanoTime(), mAgingNanos);
+            return (lane < 0) ? null : mLanes[lane].peekFirst();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        final ReentrantLock lock = mLock;
+        lock.lock();
+        try {
+            return mCount;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        final ReentrantLock lock = mLock;
+        lock.lock();
+        try {
+            return mLaneCapacity * mLanes.length - mCount;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(@Nullable Object object) {
+        if (!(object instanceof Runnable)) {
+            return false;
+        }
+
+        final ReentrantLock lock = mLock;
+        lock.lock();
+        try {
+            if (mLanes[PrioritizedTask.laneOf((Runnable) object)].remove(object)) {
+                mCount--;
+                mNotFull.signalAll();
+                return true;
+            }
+            return false;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        drainTo(new ArrayList<>());
+    }
+
+    @Override
+    public int drainTo(@NonNull Collection<? super Runnable> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(@NonNull Collection<? super Runnable> collection, int maxElements) {
+        checkNotNull(collection);
+        if (collection == this) {
+            throw new IllegalArgumentException("collection is this queue");
+        }
+
+        final ReentrantLock lock = mLock;
+        lock.lock();
+        try {
+            int count = 0;
+            while (count < maxElements && mCount > 0) {
+                collection.add(dequeue());
+                count++;
+            }
+            return count;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot iterator in lane order, {@code remove()} removes the task from the queue.
+     */
+    @Override
+    public @NonNull Iterator<Runnable> iterator() {
+        final List<Runnable> snapshot = new ArrayList<>();
+
+        final ReentrantLock lock = mLock;
+        lock.lock();
+        try {
+            for (ArrayDeque<Runnable> lane : mLanes) {
+                snapshot.addAll(lane);
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+
+        final Iterator<Runnable> iterator = snapshot.iterator();
+        return new Iterator<Runnable>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Runnable next() {
+                return (mLast = iterator.next());
+            }
+
+            @Override
+            public void remove() {
+                if (mLast == null) {
+                    throw new IllegalStateException();
+                }
+                LaneQueue.this.remove(mLast);
+                mLast = null;
+            }
+
+            private Runnable mLast;
+        };
+    }
+
+    /**
+     * Removes and returns the oldest task of the given lane, or {@code null} if the lane is empty.
+     */
+    @Nullable Runnable pollOldest(int lane) {
+        final ReentrantLock lock = mLock;
+        lock.lock();
+        try {
+            Runnable runnable = mLanes[lane].pollFirst();
+            if (runnable != null) {
+                mCount--;
+                mNotFull.signalAll();
+            }
+            return runnable;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Selects the lane to take the next task from. The oldest aged head of a lower priority lane
+     * wins, otherwise the highest priority lane that is not empty. Returns -1 if all lanes are empty.
+     */
+    static int selectLane(@NonNull ArrayDeque<Runnable>[] lanes, long now, long agingNanos) {
+        int agedLane = -1;
+        long agedTime = Long.MAX_VALUE;
+        for (int idx = 1; idx < lanes.length; ++idx) {
+            Runnable head = lanes[idx].peekFirst();
+            if (head != null && PrioritizedTask.isAged(head, now, agingNanos)) {
+                long enqueueTime = ((PrioritizedTask) head).getEnqueueTime();
+                if (agedLane < 0 || enqueueTime - agedTime < 0) {
+                    agedLane = idx;
+                    agedTime = enqueueTime;
+                }
+            }
+        }
+
+        if (agedLane >= 0) {
+            return agedLane;
+        }
+        for (int idx = 0; idx < lanes.length; ++idx) {
+            if (!lanes[idx].isEmpty()) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+
+// MARK: - Private Methods
+
+    private boolean enqueue(@NonNull Runnable runnable) {
+        ArrayDeque<Runnable> lane = mLanes[PrioritizedTask.laneOf(runnable)];
+        if (lane.size() >= mLaneCapacity) {
+            return false;
+        }
+
+        lane.addLast(runnable);
+        mCount++;
+        mNotEmpty.signal();
+        return true;
+    }
+
+    private @NonNull Runnable dequeue() {
+        int lane = selectLane(mLanes, System.nanoTime(), mAgingNanos);
+        Runnable runnable = mLanes[lane].pollFirst();
+
+        mCount--;
+        mNotFull.signalAll();
+        return runnable;
+    }
+
+    private static void checkNotNull(@Nullable Object object) {
+        if (object == null) {
+            throw new NullPointerException();
+        }
+    }
+
+// MARK: - Variables
+
+    private final ArrayDeque<Runnable>[] mLanes;
+
+    private final int mLaneCapacity;
+
+    private final long mAgingNanos;
+
+    private int mCount = 0;
+
+    private final ReentrantLock mLock = new ReentrantLock();
+
+    private final Condition mNotEmpty = mLock.newCondition();
+
+    private final Condition mNotFull = mLock.newCondition();
+}
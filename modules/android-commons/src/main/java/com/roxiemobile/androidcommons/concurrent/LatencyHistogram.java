@@ -0,0 +1,163 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations with power-of-two microsecond buckets.
+ * <p>
+ * Bucket {@code 0} holds durations below 1 us, bucket {@code i} holds durations in the range
+ * {@code [2^(i-1), 2^i)} us, the last bucket holds everything above. Recording a value costs a few
+ * atomic increments and allocates nothing.
+ */
+public final class LatencyHistogram
+{
+// MARK: - Construction
+
+    LatencyHistogram() {
+        // Do nothing
+    }
+
+// MARK: - Properties
+
+    /**
+     * Returns the number of recorded durations.
+     */
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getTotalNanos() {
+        return mTotalNanos.get();
+    }
+
+    public long getMaxNanos() {
+        return mMaxNanos.get();
+    }
+
+    public long getMeanNanos() {
+        long count = getCount();
+        return (count > 0) ? getTotalNanos() / count : 0L;
+    }
+
+    /**
+     * Returns the number of durations recorded in the bucket with the given index.
+     */
+    public long getBucketCount(int index) {
+        return mBuckets.get(index);
+    }
+
+    /**
+     * Returns the upper bound of the bucket with the given index in microseconds.
+     */
+    public static long getBucketUpperBoundMicros(int index) {
+        return (index >= BUCKET_COUNT - 1) ? Long.MAX_VALUE : (1L << index);
+    }
+
+    /**
+     * Returns an estimate of the given percentile, i.e. the upper bound of the bucket it falls
+     * into, clamped to the maximum recorded duration.
+     *
+     * @param percentile The percentile in the range {@code [0, 100]}
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile is out of range");
+        }
+
+        long count = 0;
+        for (int idx = 0; idx < BUCKET_COUNT; ++idx) {
+            count += mBuckets.get(idx);
+        }
+        if (count == 0) {
+            return 0L;
+        }
+
+        long rank = (long) Math.ceil(count * percentile / 100.0);
+        long seen = 0;
+        for (int idx = 0; idx < BUCKET_COUNT; ++idx) {
+            seen += mBuckets.get(idx);
+            if (seen >= rank && seen > 0) {
+                long upperBound = getBucketUpperBoundMicros(idx);
+                long upperBoundNanos = (upperBound == Long.MAX_VALUE) ? Long.MAX_VALUE : TimeUnit.MICROSECONDS.toNanos(upperBound);
+                return Math.min(upperBoundNanos, getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+// MARK: - Methods
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+
+        mBuckets.incrementAndGet(bucketIndex(nanos));
+        mCount.incrementAndGet();
+        mTotalNanos.addAndGet(nanos);
+
+        long max;
+        while (nanos > (max = mMaxNanos.get())) {
+            if (mMaxNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    @NonNull LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        for (int idx = 0; idx < BUCKET_COUNT; ++idx) {
+            copy.mBuckets.set(idx, mBuckets.get(idx));
+        }
+        copy.mCount.set(mCount.get());
+        copy.mTotalNanos.set(mTotalNanos.get());
+        copy.mMaxNanos.set(mMaxNanos.get());
+        return copy;
+    }
+
+    void reset() {
+        for (int idx = 0; idx < BUCKET_COUNT; ++idx) {
+            mBuckets.set(idx, 0L);
+        }
+        mCount.set(0L);
+        mTotalNanos.set(0L);
+        mMaxNanos.set(0L);
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{" +
+                "count=" + getCount() +
+                ", meanUs=" + TimeUnit.NANOSECONDS.toMicros(getMeanNanos()) +
+                ", p50Us=" + TimeUnit.NANOSECONDS.toMicros(getPercentileNanos(50)) +
+                ", p99Us=" + TimeUnit.NANOSECONDS.toMicros(getPercentileNanos(99)) +
+                ", maxUs=" + TimeUnit.NANOSECONDS.toMicros(getMaxNanos()) +
+                '}';
+    }
+
+// MARK: - Private Methods
+
+    private static int bucketIndex(long nanos) {
+        long micros = nanos / 1000L;
+        int index = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+
+// MARK: - Constants
+
+    public static final int BUCKET_COUNT = 32;
+
+// MARK: - Variables
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+
+    private final AtomicLong mCount = new AtomicLong();
+
+    private final AtomicLong mTotalNanos = new AtomicLong();
+
+    private final AtomicLong mMaxNanos = new AtomicLong();
+}
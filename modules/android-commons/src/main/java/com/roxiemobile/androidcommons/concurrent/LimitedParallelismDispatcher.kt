@@ -0,0 +1,138 @@
+package com.roxiemobile.androidcommons.concurrent
+
+import kotlinx.coroutines.experimental.CoroutineDispatcher
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Future
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.coroutines.experimental.CoroutineContext
+import kotlin.coroutines.experimental.EmptyCoroutineContext
+
+/**
+ * A view of a dispatcher which runs at most the given number of blocks at a time.
+ *
+ * The blocks wait in a FIFO queue, which is drained by up to `parallelism` runs of this view on
+ * the underlying dispatcher. A run drains a batch of blocks without a thread hop between them and
+ * is dispatched again afterwards, so a busy view does not hold a worker thread for long.
+ *
+ * If the underlying dispatcher rejects a run, the block of the rejected call is dropped and the
+ * exception is rethrown. The blocks queued by other callers in the meantime get one more run. If
+ * that run is rejected too, they are dropped, and the ones which are futures are cancelled.
+ */
+internal class LimitedParallelismDispatcher(
+        private val mDispatcher: CoroutineDispatcher,
+        private val mParallelism: Int) : CoroutineDispatcher(), Runnable
+{
+// MARK: - Methods
+
+    override fun dispatch(context: CoroutineContext, block: Runnable) {
+        mQueue.offer(block)
+        if (!tryAddWorker()) {
+            return
+        }
+
+        try {
+            mDispatcher.dispatch(context, this)
+        }
+        catch (e: RejectedExecutionException) {
+            mWorkerCount.decrementAndGet()
+            // Let the caller know unless a running worker has taken the block in the meantime
+            val dropped = mQueue.remove(block)
+
+            // The callers which have queued their blocks meanwhile rely on this run, retry it for them
+            if (!mQueue.isEmpty() && tryAddWorker() && !redispatch()) {
+                mWorkerCount.decrementAndGet()
+                dropQueued()
+            }
+
+            if (dropped) {
+                throw e
+            }
+        }
+    }
+
+    override fun run() {
+        var count = 0
+        while (true) {
+            val block = mQueue.poll()
+            if (block == null) {
+                mWorkerCount.decrementAndGet()
+
+                // A block could have been queued after the poll above, take it over unless another worker does
+                if (mQueue.isEmpty() || !tryAddWorker()) {
+                    return
+                }
+                continue
+            }
+
+            try {
+                block.run()
+            }
+            catch (e: Throwable) {
+                // Hand the worker over to a new run before the exception leaves the thread
+                if (!redispatch()) {
+                    mWorkerCount.decrementAndGet()
+                }
+                throw e
+            }
+
+            if (++count >= BATCH_SIZE) {
+                if (redispatch()) {
+                    return
+                }
+                // The underlying dispatcher is saturated, keep draining on the current thread
+                count = 0
+            }
+        }
+    }
+
+    override fun toString(): String {
+        return "$mDispatcher.limitedParallelism($mParallelism)"
+    }
+
+// MARK: - Private Methods
+
+    private fun tryAddWorker(): Boolean {
+        while (true) {
+            val count = mWorkerCount.get()
+            if (count >= mParallelism) {
+                return false
+            }
+            if (mWorkerCount.compareAndSet(count, count + 1)) {
+                return true
+            }
+        }
+    }
+
+    private fun dropQueued() {
+        while (true) {
+            val block = mQueue.poll() ?: return
+            // Release the threads waiting for a dropped future
+            (block as? Future<*>)?.cancel(false)
+        }
+    }
+
+    private fun redispatch(): Boolean {
+        return try {
+            mDispatcher.dispatch(EmptyCoroutineContext, this)
+            true
+        }
+        catch (e: RejectedExecutionException) {
+            false
+        }
+    }
+
+// MARK: - Constants
+
+    private companion object
+    {
+        // The number of blocks a run drains before it yields the thread
+        const val BATCH_SIZE = 16
+    }
+
+// MARK: - Variables
+
+    private val mQueue = ConcurrentLinkedQueue<Runnable>()
+
+    private val mWorkerCount = AtomicInteger()
+}
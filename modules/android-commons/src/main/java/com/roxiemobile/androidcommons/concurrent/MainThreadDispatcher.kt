@@ -0,0 +1,51 @@
+package com.roxiemobile.androidcommons.concurrent
+
+import kotlinx.coroutines.experimental.CoroutineDispatcher
+import kotlin.coroutines.experimental.CoroutineContext
+
+/**
+ * A coroutine dispatcher which resumes the coroutines on the main thread through [ThreadUtils],
+ * so it follows the UI thread set with [ThreadUtils.setUiThread] or [ThreadUtils.setUiThreadScheduler].
+ *
+ * The [immediate] dispatcher does not post a coroutine which already runs on the main thread, it
+ * resumes it right away and saves a Handler message and the wait for the Looper per resume.
+ */
+class MainThreadDispatcher private constructor(private val mImmediate: Boolean) : CoroutineDispatcher()
+{
+// MARK: - Properties
+
+    /**
+     * Returns the dispatcher which resumes the coroutines inline when they already run on the
+     * main thread. A resumed coroutine then runs ahead of the messages queued before it.
+     */
+    val immediate: MainThreadDispatcher
+        get() = IMMEDIATE_INSTANCE
+
+// MARK: - Methods
+
+    override fun isDispatchNeeded(context: CoroutineContext): Boolean {
+        return !mImmediate || !ThreadUtils.runningOnUiThread()
+    }
+
+    override fun dispatch(context: CoroutineContext, block: Runnable) {
+        ThreadUtils.postOnUiThread(block)
+    }
+
+    override fun toString(): String {
+        return if (mImmediate) "MainThreadDispatcher.immediate" else "MainThreadDispatcher"
+    }
+
+// MARK: - Constants
+
+    companion object
+    {
+        @JvmStatic
+        fun shared(): MainThreadDispatcher {
+            return SHARED_INSTANCE
+        }
+
+        private val SHARED_INSTANCE = MainThreadDispatcher(false)
+
+        private val IMMEDIATE_INSTANCE = MainThreadDispatcher(true)
+    }
+}
@@ -1,15 +1,27 @@
 package com.roxiemobile.androidcommons.concurrent;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
  * An executor service that executes its tasks on the main thread.
  * <p>
- * Shutting down this executor is not supported.
+ * By default every task is posted as a separate Handler message. With batching enabled the
+ * tasks are collected in a lock-free queue and run in submission order from a single message
+ * per Looper turn, see {@link #setBatchingEnabled}.
+ * <p>
+ * The instances created with {@link #newInstance()} track their pending tasks, so a subsystem can
+ * drain its main-thread work with {@link #shutdown()} or drop it with {@link #shutdownNow()}.
+ * Shutting down the shared instance is not supported.
  */
 public final class MainThreadExecutor extends AbstractExecutorService
 {
@@ -19,55 +31,239 @@ public final class MainThreadExecutor extends AbstractExecutorService
         return SingletonHolder.SHARED_INSTANCE;
     }
 
+    /**
+     * Creates a new executor that is independent from the shared instance and can be shut down.
+     */
+    public static MainThreadExecutor newInstance() {
+        return new MainThreadExecutor(false);
+    }
+
     private static class SingletonHolder {
-        private static final MainThreadExecutor SHARED_INSTANCE = new MainThreadExecutor();
+        private static final MainThreadExecutor SHARED_INSTANCE = new MainThreadExecutor(true);
+    }
+
+    private MainThreadExecutor(boolean shared) {
+        mPendingTasks = shared ? null : Collections.newSetFromMap(new ConcurrentHashMap<>());
+    }
+
+// MARK: - Properties
+
+    /**
+     * Enables or disables the metrics of the posted tasks. The wait time of a task is the time it
+     * spent in the Looper queue. Disabling drops the recorded values.
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        synchronized (mMetricsLock) {
+            if (enabled && mMetrics == null) {
+                mMetrics = new ExecutorMetrics(MainThreadExecutor.class.getSimpleName(), null);
+            }
+            else if (!enabled) {
+                mMetrics = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the metrics of this executor, or {@code null} if they are disabled.
+     */
+    public @Nullable ExecutorMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Enables or disables the batched dispatch. Tasks already waiting for a batch are run anyway.
+     */
+    public void setBatchingEnabled(boolean enabled) {
+        mBatchingEnabled = enabled;
     }
 
-    private MainThreadExecutor() {
-        // Do nothing
+    public boolean isBatchingEnabled() {
+        return mBatchingEnabled;
     }
 
 // MARK: - Methods
 
+    /**
+     * @throws RejectedExecutionException if this executor is shut down
+     */
     @Override
     public void execute(@NonNull Runnable runnable) {
-        ThreadUtils.runOnUiThread(runnable);
+        if (runnable == null) {
+            throw new NullPointerException("runnable is null");
+        }
+        if (mShutdown) {
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+
+        ExecutorMetrics metrics = mMetrics;
+        Runnable task = (metrics != null) ? metrics.wrap(runnable) : runnable;
+
+        if (mPendingTasks != null) {
+            PendingTask pendingTask = new PendingTask(runnable, task, metrics);
+            mPendingTasks.add(pendingTask);
+
+            // Reject the task which has been added after this executor was shut down
+            if (mShutdown && mPendingTasks.remove(pendingTask)) {
+                signalIfTerminated();
+                throw new RejectedExecutionException("Executor is shut down");
+            }
+            task = pendingTask;
+        }
+
+        // The task is accepted at this point, a rejected one is never counted as queued
+        if (metrics != null) {
+            metrics.onEnqueued();
+        }
+
+        if (!mBatchingEnabled) {
+            ThreadUtils.runOnUiThread(task);
+        }
+        // Run inline like runOnUiThread() does, unless it would overtake the waiting tasks
+        else if (mBatchedDispatcher.isEmpty() && ThreadUtils.runningOnUiThread()) {
+            task.run();
+        }
+        else {
+            mBatchedDispatcher.dispatch(task);
+        }
     }
 
     /**
-     * Not supported and throws an exception when used.
+     * Stops accepting new tasks and lets the pending ones run.
+     *
+     * @throws UnsupportedOperationException if called on the shared instance
      */
-    @Deprecated
     @Override
     public void shutdown() {
-        throw new UnsupportedOperationException();
+        checkNotShared();
+
+        mShutdown = true;
+        signalIfTerminated();
     }
 
     /**
-     * Not supported and throws an exception when used.
+     * Stops accepting new tasks and returns the pending ones, which will not run. The running
+     * task is not interrupted.
+     *
+     * @throws UnsupportedOperationException if called on the shared instance
      */
-    @Deprecated
     @Override
     public @NonNull List<Runnable> shutdownNow() {
-        throw new UnsupportedOperationException();
+        checkNotShared();
+
+        mShutdown = true;
+        List<Runnable> tasks = new ArrayList<>();
+        for (PendingTask task : mPendingTasks) {
+            if (mPendingTasks.remove(task)) {
+                tasks.add(task.mRunnable);
+                if (task.mMetrics != null) {
+                    task.mMetrics.onDropped();
+                }
+            }
+        }
+
+        signalIfTerminated();
+        return tasks;
     }
 
     @Override
     public boolean isShutdown() {
-        return false;
+        return mShutdown;
     }
 
     @Override
     public boolean isTerminated() {
-        return false;
+        return mShutdown && mPendingTasks.isEmpty();
     }
 
     /**
-     * Not supported and throws an exception when used.
+     * Waits for the pending tasks to run after a shutdown request.
+     *
+     * @throws IllegalStateException if called on the main thread, which would never let them run
      */
-    @Deprecated
     @Override
-    public boolean awaitTermination(long l, @NonNull TimeUnit timeUnit) throws InterruptedException {
-        throw new UnsupportedOperationException();
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        checkNotShared();
+        if (!isTerminated() && ThreadUtils.runningOnUiThread()) {
+            throw new IllegalStateException("Cannot await termination on the main thread");
+        }
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (mTerminationLock) {
+            while (!isTerminated()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(mTerminationLock, remaining);
+            }
+        }
+        return true;
+    }
+
+// MARK: - Private Methods
+
+    private void checkNotShared() {
+        if (mPendingTasks == null) {
+            throw new UnsupportedOperationException("Shared executor cannot be shut down");
+        }
+    }
+
+    private void signalIfTerminated() {
+        if (isTerminated()) {
+            synchronized (mTerminationLock) {
+                mTerminationLock.notifyAll();
+            }
+        }
+    }
+
+// MARK: - Inner Types
+
+    private final class PendingTask implements Runnable
+    {
+        PendingTask(@NonNull Runnable runnable, @NonNull Runnable task, @Nullable ExecutorMetrics metrics) {
+            mRunnable = runnable;
+            mTask = task;
+            mMetrics = metrics;
+        }
+
+        @Override
+        public void run() {
+            // The task has been returned by shutdownNow()
+            if (!mPendingTasks.contains(this)) {
+                return;
+            }
+
+            try {
+                mTask.run();
+            }
+            finally {
+                mPendingTasks.remove(this);
+                signalIfTerminated();
+            }
+        }
+
+        private final Runnable mRunnable;
+
+        private final Runnable mTask;
+
+        // The metrics which have counted the task, if any
+        private final ExecutorMetrics mMetrics;
     }
+
+// MARK: - Variables
+
+    private volatile ExecutorMetrics mMetrics;
+
+    private final Object mMetricsLock = new Object();
+
+    private volatile boolean mBatchingEnabled = false;
+
+    // The pending tasks of an instance that can be shut down, null for the shared instance
+    private final Set<PendingTask> mPendingTasks;
+
+    private volatile boolean mShutdown = false;
+
+    private final Object mTerminationLock = new Object();
+
+    private final BatchedDispatcher mBatchedDispatcher = new BatchedDispatcher(ThreadUtils::postOnUiThread);
 }
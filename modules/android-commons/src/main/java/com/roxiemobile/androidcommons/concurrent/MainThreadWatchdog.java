@@ -0,0 +1,263 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.roxiemobile.androidcommons.logging.Logger;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Times the blocking hand-offs to the main thread made by {@link ThreadUtils#runOnUiThreadBlocking}.
+ * <p>
+ * The watchdog is disabled by default. Once enabled, a waiting thread that is not served within
+ * the threshold captures the stack of the main thread, which shows what kept it busy, reports
+ * a {@link StallReport} to the listener right away and keeps waiting, so a hand-off the main thread
+ * never serves is reported too. Without a listener the reports are logged as warnings.
+ */
+public final class MainThreadWatchdog
+{
+// MARK: - Construction
+
+    public static MainThreadWatchdog shared() {
+        return SingletonHolder.SHARED_INSTANCE;
+    }
+
+    private static class SingletonHolder {
+        private static final MainThreadWatchdog SHARED_INSTANCE = new MainThreadWatchdog();
+    }
+
+    MainThreadWatchdog() {
+        // Do nothing
+    }
+
+// MARK: - Properties
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Sets the wait time after which a hand-off is reported as a stall. The default is
+     * {@value #DEFAULT_THRESHOLD_MILLIS} ms.
+     */
+    public void setThreshold(long threshold, @NonNull TimeUnit unit) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("threshold <= 0");
+        }
+        mThresholdNanos = unit.toNanos(threshold);
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Returns the number of timed hand-offs.
+     */
+    public long getHandoffCount() {
+        return mHandoffCount.get();
+    }
+
+    /**
+     * Returns the number of hand-offs that exceeded the threshold.
+     */
+    public long getStallCount() {
+        return mStallCount.get();
+    }
+
+    public long getTotalWaitNanos() {
+        return mTotalWaitNanos.get();
+    }
+
+    public long getMaxWaitNanos() {
+        return mMaxWaitNanos.get();
+    }
+
+// MARK: - Methods
+
+    public void reset() {
+        mHandoffCount.set(0);
+        mStallCount.set(0);
+        mTotalWaitNanos.set(0);
+        mMaxWaitNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "MainThreadWatchdog{" +
+                "handoffs=" + getHandoffCount() +
+                ", stalls=" + getStallCount() +
+                ", totalWaitNanos=" + getTotalWaitNanos() +
+                ", maxWaitNanos=" + getMaxWaitNanos() +
+                '}';
+    }
+
+    /**
+     * Waits for the task handed off to the main thread and times the wait if the watchdog is enabled.
+     */
+    <T> T await(@NonNull Future<T> task, @Nullable Thread mainThread) throws InterruptedException, ExecutionException {
+        if (!mEnabled || task.isDone()) {
+            return task.get();
+        }
+
+        long startTime = System.nanoTime();
+        StallReport report = null;
+        try {
+            try {
+                return task.get(mThresholdNanos, TimeUnit.NANOSECONDS);
+            }
+            catch (TimeoutException e) {
+                StackTraceElement[] stackTrace = (mainThread != null) ? mainThread.getStackTrace() : new StackTraceElement[0];
+                report = new StallReport(Thread.currentThread(), stackTrace, System.nanoTime() - startTime);
+                reportStall(report);
+                return task.get();
+            }
+        }
+        finally {
+            long waitNanos = System.nanoTime() - startTime;
+            if (report != null) {
+                report.mWaitNanos = waitNanos;
+            }
+            record(waitNanos);
+        }
+    }
+
+// MARK: - Private Methods
+
+    private void reportStall(@NonNull StallReport report) {
+        mStallCount.incrementAndGet();
+
+        Listener listener = mListener;
+        if (listener != null) {
+            // The listener must not replace the result or the exception of the hand-off
+            try {
+                listener.onStall(report);
+            }
+            catch (RuntimeException e) {
+                Logger.e(TAG, "Stall listener has failed", e);
+            }
+        }
+        else {
+            Logger.w(TAG, report.toString());
+        }
+    }
+
+    private void record(long waitNanos) {
+        mHandoffCount.incrementAndGet();
+        mTotalWaitNanos.addAndGet(waitNanos);
+
+        long maxWaitNanos;
+        while (waitNanos > (maxWaitNanos = mMaxWaitNanos.get())) {
+            if (mMaxWaitNanos.compareAndSet(maxWaitNanos, waitNanos)) {
+                break;
+            }
+        }
+    }
+
+// MARK: - Inner Types
+
+    public interface Listener
+    {
+        /**
+         * Called on the waiting thread as soon as the hand-off exceeds the threshold, while the
+         * thread keeps waiting. The exceptions thrown by the listener are logged and ignored.
+         */
+        void onStall(@NonNull StallReport report);
+    }
+
+    public static final class StallReport
+    {
+        StallReport(@NonNull Thread waitingThread, @NonNull StackTraceElement[] mainThreadStackTrace, long captureNanos) {
+            mWaitingThreadName = waitingThread.getName();
+            mWaitingThreadId = waitingThread.getId();
+            mMainThreadStackTrace = mainThreadStackTrace;
+            mCaptureNanos = captureNanos;
+            mWaitNanos = captureNanos;
+        }
+
+        public @NonNull String getWaitingThreadName() {
+            return mWaitingThreadName;
+        }
+
+        public long getWaitingThreadId() {
+            return mWaitingThreadId;
+        }
+
+        /**
+         * Returns the stack of the main thread captured when the threshold was exceeded.
+         */
+        public @NonNull StackTraceElement[] getMainThreadStackTrace() {
+            return mMainThreadStackTrace.clone();
+        }
+
+        /**
+         * Returns the time the waiting thread had waited when the stack was captured.
+         */
+        public long getCaptureNanos() {
+            return mCaptureNanos;
+        }
+
+        /**
+         * Returns the total time the waiting thread has waited. Until the hand-off completes, e.g.
+         * within {@link Listener#onStall}, this is the time at which the stack was captured.
+         */
+        public long getWaitNanos() {
+            return mWaitNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder()
+                    .append("Main thread stall: thread '").append(mWaitingThreadName)
+                    .append("' (id=").append(mWaitingThreadId).append(") waited ")
+                    .append(TimeUnit.NANOSECONDS.toMillis(mWaitNanos)).append(" ms, main thread at ")
+                    .append(TimeUnit.NANOSECONDS.toMillis(mCaptureNanos)).append(" ms:");
+
+            for (StackTraceElement element : mMainThreadStackTrace) {
+                builder.append("\n    at ").append(element);
+            }
+            return builder.toString();
+        }
+
+        private final String mWaitingThreadName;
+
+        private final long mWaitingThreadId;
+
+        private final StackTraceElement[] mMainThreadStackTrace;
+
+        private final long mCaptureNanos;
+
+        private volatile long mWaitNanos;
+    }
+
+// MARK: - Constants
+
+    private static final String TAG = MainThreadWatchdog.class.getSimpleName();
+
+    public static final long DEFAULT_THRESHOLD_MILLIS = 100L;
+
+// MARK: - Variables
+
+    private volatile boolean mEnabled = false;
+
+    private volatile long mThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_THRESHOLD_MILLIS);
+
+    private volatile Listener mListener;
+
+    private final AtomicLong mHandoffCount = new AtomicLong();
+
+    private final AtomicLong mStallCount = new AtomicLong();
+
+    private final AtomicLong mTotalWaitNanos = new AtomicLong();
+
+    private final AtomicLong mMaxWaitNanos = new AtomicLong();
+}
@@ -0,0 +1,422 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded lock-free multi-producer multi-consumer queue over a ring buffer.
+ * <p>
+ * Every slot carries a sequence number which tells the producers and the consumers whether the
+ * slot is free or published for the current lap, so both sides claim a slot with a single CAS and
+ * neither allocates a node per element. Threads park only when they have to wait: a consumer of
+ * an empty queue or a producer of a full one, after yielding a few times. The other side takes
+ * the lock to wake them only while somebody is parked.
+ * <p>
+ * An element removed from the middle of the queue leaves a tombstone in its slot, which is
+ * skipped by the consumers. The tombstone is not counted by {@link #size()}, but its slot is
+ * reused only once the consumers reach it. The capacity is rounded up to a power of two.
+ */
+public final class MpmcBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E>
+{
+// MARK: - Construction
+
+    public MpmcBlockingQueue(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+
+        mMask = size - 1;
+        mElements = new AtomicReferenceArray<>(size);
+        mSequences = new AtomicLongArray(size);
+        for (int idx = 0; idx < size; ++idx) {
+            mSequences.set(idx, idx);
+        }
+    }
+
+// MARK: - Properties
+
+    public int capacity() {
+        return mMask + 1;
+    }
+
+// MARK: - Methods
+
+    @Override
+    public boolean offer(@NonNull E element) {
+        checkNotNull(element);
+
+        if (!enqueue(element)) {
+            return false;
+        }
+        if (mTakeWaiters.get() > 0) {
+            signal(mNotEmpty);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean offer(@NonNull E element, long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        checkNotNull(element);
+
+        if (offer(element)) {
+            return true;
+        }
+
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = mLock;
+        lock.lockInterruptibly();
+        mPutWaiters.incrementAndGet();
+        try {
+            while (!offer(element)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = mNotFull.awaitNanos(nanos);
+            }
+            return true;
+        }
+        finally {
+            mPutWaiters.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(@NonNull E element) throws InterruptedException {
+        checkNotNull(element);
+
+        for (int spin = 0; spin < SPIN_COUNT; ++spin) {
+            if (offer(element)) {
+                return;
+            }
+            Thread.yield();
+        }
+
+        final ReentrantLock lock = mLock;
+        lock.lockInterruptibly();
+        mPutWaiters.incrementAndGet();
+        try {
+            while (!offer(element)) {
+                mNotFull.await();
+            }
+        }
+        finally {
+            mPutWaiters.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public @Nullable E poll() {
+        E element = dequeue();
+        if (element != null && mPutWaiters.get() > 0) {
+            signal(mNotFull);
+        }
+        return element;
+    }
+
+    @Override
+    public @Nullable E poll(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        E element = poll();
+        if (element != null) {
+            return element;
+        }
+
+        long nanos = unit.toNanos(timeout);
+        final ReentrantLock lock = mLock;
+        lock.lockInterruptibly();
+        // Announce the waiter before checking again, a producer either sees it or its element is seen here
+        mTakeWaiters.incrementAndGet();
+        try {
+            while ((element = poll()) == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = mNotEmpty.awaitNanos(nanos);
+            }
+            return element;
+        }
+        finally {
+            mTakeWaiters.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public @NonNull E take() throws InterruptedException {
+        E element;
+        for (int spin = 0; spin < SPIN_COUNT; ++spin) {
+            if ((element = poll()) != null) {
+                return element;
+            }
+            Thread.yield();
+        }
+
+        final ReentrantLock lock = mLock;
+        lock.lockInterruptibly();
+        mTakeWaiters.incrementAndGet();
+        try {
+            while ((element = poll()) == null) {
+                mNotEmpty.await();
+            }
+            return element;
+        }
+        finally {
+            mTakeWaiters.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public @Nullable E peek() {
+        for (long pos = mHead.get(), tail = mTail.get(); pos < tail; ++pos) {
+            int idx = (int) (pos & mMask);
+            Object element = mElements.get(idx);
+            if (mSequences.get(idx) == pos + 1 && element != null && element != TOMBSTONE) {
+                return (E) element;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of elements, the removed ones are not counted even though their slots
+     * have not been reached by the consumers yet.
+     */
+    @Override
+    public int size() {
+        return Math.min(mCount.get(), capacity());
+    }
+
+    /**
+     * Returns the number of free slots, the slots of the removed elements are free only once the
+     * consumers have reached them.
+     */
+    @Override
+    public int remainingCapacity() {
+        // Read the head first, so that the tail cannot lag behind it
+        long head = mHead.get();
+        long tail = mTail.get();
+        return capacity() - (int) Math.max(0L, Math.min(tail - head, capacity()));
+    }
+
+    /**
+     * Removes one instance of the element by leaving a tombstone in its slot.
+     */
+    @Override
+    public boolean remove(@Nullable Object object) {
+        if (object == null) {
+            return false;
+        }
+
+        for (long pos = mHead.get(), tail = mTail.get(); pos < tail; ++pos) {
+            int idx = (int) (pos & mMask);
+            if (mSequences.get(idx) == pos + 1 && mElements.compareAndSet(idx, object, TOMBSTONE)) {
+                mCount.decrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int drainTo(@NonNull Collection<? super E> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(@NonNull Collection<? super E> collection, int maxElements) {
+        checkNotNull(collection);
+        if (collection == this) {
+            throw new IllegalArgumentException("collection is this queue");
+        }
+
+        int count = 0;
+        E element;
+        while (count < maxElements && (element = poll()) != null) {
+            collection.add(element);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns a snapshot iterator in FIFO order, {@code remove()} removes the element from the queue.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public @NonNull Iterator<E> iterator() {
+        final List<E> snapshot = new ArrayList<>();
+        for (long pos = mHead.get(), tail = mTail.get(); pos < tail; ++pos) {
+            int idx = (int) (pos & mMask);
+            Object element = mElements.get(idx);
+            if (mSequences.get(idx) == pos + 1 && element != null && element != TOMBSTONE) {
+                snapshot.add((E) element);
+            }
+        }
+
+        final Iterator<E> iterator = snapshot.iterator();
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return (mLast = iterator.next());
+            }
+
+            @Override
+            public void remove() {
+                if (mLast == null) {
+                    throw new IllegalStateException();
+                }
+                MpmcBlockingQueue.this.remove(mLast);
+                mLast = null;
+            }
+
+            private E mLast;
+        };
+    }
+
+// MARK: - Private Methods
+
+    private boolean enqueue(@NonNull E element) {
+        long pos = mTail.get();
+        int idx;
+        for (;;) {
+            idx = (int) (pos & mMask);
+            long diff = mSequences.get(idx) - pos;
+            if (diff == 0) {
+                if (mTail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = mTail.get();
+            }
+            else if (diff < 0) {
+                // The slot still holds the element of the previous lap
+                return false;
+            }
+            else {
+                pos = mTail.get();
+            }
+        }
+
+        // Count the element before it is published, so that the count never drops below zero
+        mCount.incrementAndGet();
+
+        // Publish the element with the sequence of the slot
+        mElements.lazySet(idx, element);
+        mSequences.set(idx, pos + 1);
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private @Nullable E dequeue() {
+        for (;;) {
+            long pos = mHead.get();
+            int idx;
+            for (;;) {
+                idx = (int) (pos & mMask);
+                long diff = mSequences.get(idx) - (pos + 1);
+                if (diff == 0) {
+                    if (mHead.compareAndSet(pos, pos + 1)) {
+                        break;
+                    }
+                    pos = mHead.get();
+                }
+                else if (diff < 0) {
+                    return null;
+                }
+                else {
+                    pos = mHead.get();
+                }
+            }
+
+            // Races with remove(), exactly one of them takes the element out of the slot
+            Object element = mElements.getAndSet(idx, null);
+            mSequences.set(idx, pos + mMask + 1);
+
+            if (element != TOMBSTONE) {
+                mCount.decrementAndGet();
+                return (E) element;
+            }
+
+            // The slot of the removed element is free now, a parked producer can take it
+            if (mPutWaiters.get() > 0) {
+                signal(mNotFull);
+            }
+        }
+    }
+
+    private void signal(@NonNull Condition condition) {
+        final ReentrantLock lock = mLock;
+        lock.lock();
+        try {
+            condition.signal();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private static void checkNotNull(@Nullable Object object) {
+        if (object == null) {
+            throw new NullPointerException();
+        }
+    }
+
+// MARK: - Constants
+
+    private static final Object TOMBSTONE = new Object();
+
+    // The number of yields before a thread parks, a short wait is cheaper than a park and a wake-up
+    private static final int SPIN_COUNT = 16;
+
+// MARK: - Variables
+
+    private final int mMask;
+
+    private final AtomicReferenceArray<Object> mElements;
+
+    private final AtomicLongArray mSequences;
+
+    private final AtomicLong mHead = new AtomicLong();
+
+    private final AtomicLong mTail = new AtomicLong();
+
+    // The number of elements neither taken nor removed
+    private final AtomicInteger mCount = new AtomicInteger();
+
+    // The lock and the conditions are used only while a thread is parked
+    private final ReentrantLock mLock = new ReentrantLock();
+
+    private final Condition mNotEmpty = mLock.newCondition();
+
+    private final Condition mNotFull = mLock.newCondition();
+
+    private final AtomicInteger mTakeWaiters = new AtomicInteger();
+
+    private final AtomicInteger mPutWaiters = new AtomicInteger();
+}
@@ -0,0 +1,310 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+
+import com.annimon.stream.function.BiFunction;
+import com.annimon.stream.function.BinaryOperator;
+import com.annimon.stream.function.Consumer;
+import com.annimon.stream.function.Function;
+import com.annimon.stream.function.IntConsumer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bulk operations over arrays and lists that split the work across the worker threads.
+ * <p>
+ * The calling thread takes part in the work, the other workers claim chunks from a shared cursor.
+ * The chunks shrink as the remaining work does, so the threads finish at about the same time.
+ * Inputs of up to {@value #SEQUENTIAL_CUTOFF} elements are processed on the calling thread only.
+ * The first exception thrown by an element stops the remaining chunks and is rethrown to the
+ * caller once the running ones have finished.
+ * <p>
+ * The operations without an executor use {@link ParallelWorkerThreadExecutor#compute()}.
+ */
+public final class ParallelUtils
+{
+// MARK: - Construction
+
+    private ParallelUtils() {
+        // Do nothing
+    }
+
+// MARK: - Methods
+
+    /**
+     * Calls the body for every index from 0 inclusive to the given count exclusive.
+     */
+    public static void parallelFor(int count, @NonNull IntConsumer body) {
+        parallelFor(count, body, defaultExecutor());
+    }
+
+    public static void parallelFor(int count, @NonNull final IntConsumer body, @NonNull Executor executor) {
+        if (body == null) {
+            throw new NullPointerException("body is null");
+        }
+
+        forRange(count, executor, (from, to) -> {
+            for (int idx = from; idx < to; ++idx) {
+                body.accept(idx);
+            }
+        });
+    }
+
+    public static <T> void parallelFor(@NonNull T[] array, @NonNull Consumer<? super T> action) {
+        parallelFor(Arrays.asList(array), action, defaultExecutor());
+    }
+
+    public static <T> void parallelFor(@NonNull T[] array, @NonNull Consumer<? super T> action, @NonNull Executor executor) {
+        parallelFor(Arrays.asList(array), action, executor);
+    }
+
+    public static <T> void parallelFor(@NonNull List<T> list, @NonNull Consumer<? super T> action) {
+        parallelFor(list, action, defaultExecutor());
+    }
+
+    public static <T> void parallelFor(@NonNull List<T> list, @NonNull final Consumer<? super T> action, @NonNull Executor executor) {
+        if (action == null) {
+            throw new NullPointerException("action is null");
+        }
+
+        final List<T> elements = randomAccess(list);
+        forRange(elements.size(), executor, (from, to) -> {
+            for (int idx = from; idx < to; ++idx) {
+                action.accept(elements.get(idx));
+            }
+        });
+    }
+
+    public static <T, R> List<R> parallelMap(@NonNull T[] array, @NonNull Function<? super T, ? extends R> mapper) {
+        return parallelMap(Arrays.asList(array), mapper, defaultExecutor());
+    }
+
+    public static <T, R> List<R> parallelMap(@NonNull T[] array, @NonNull Function<? super T, ? extends R> mapper, @NonNull Executor executor) {
+        return parallelMap(Arrays.asList(array), mapper, executor);
+    }
+
+    public static <T, R> List<R> parallelMap(@NonNull List<T> list, @NonNull Function<? super T, ? extends R> mapper) {
+        return parallelMap(list, mapper, defaultExecutor());
+    }
+
+    /**
+     * Returns a fixed-size list of the results of the mapper applied to every element, in the
+     * order of the elements.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, R> List<R> parallelMap(@NonNull List<T> list, @NonNull final Function<? super T, ? extends R> mapper,
+            @NonNull Executor executor) {
+        if (mapper == null) {
+            throw new NullPointerException("mapper is null");
+        }
+
+        final List<T> elements = randomAccess(list);
+        final Object[] results = new Object[elements.size()];
+        forRange(elements.size(), executor, (from, to) -> {
+            for (int idx = from; idx < to; ++idx) {
+                results[idx] = mapper.apply(elements.get(idx));
+            }
+        });
+        return (List<R>) Arrays.asList(results);
+    }
+
+    public static <T, R> R parallelReduce(@NonNull List<T> list, R identity,
+            @NonNull BiFunction<R, ? super T, R> accumulator, @NonNull BinaryOperator<R> combiner) {
+        return parallelReduce(list, identity, accumulator, combiner, defaultExecutor());
+    }
+
+    /**
+     * Folds every chunk with the accumulator starting from the identity, and then combines the
+     * results of the chunks in the order of the elements. The combiner must be associative.
+     */
+    public static <T, R> R parallelReduce(@NonNull List<T> list, final R identity,
+            @NonNull final BiFunction<R, ? super T, R> accumulator, @NonNull BinaryOperator<R> combiner,
+            @NonNull Executor executor) {
+        if (accumulator == null || combiner == null) {
+            throw new NullPointerException();
+        }
+
+        final List<T> elements = randomAccess(list);
+        final Map<Integer, R> chunkResults = new TreeMap<>();
+        forRange(elements.size(), executor, (from, to) -> {
+            R result = identity;
+            for (int idx = from; idx < to; ++idx) {
+                result = accumulator.apply(result, elements.get(idx));
+            }
+            synchronized (chunkResults) {
+                chunkResults.put(from, result);
+            }
+        });
+
+        R result = identity;
+        boolean first = true;
+        for (R chunkResult : chunkResults.values()) {
+            result = first ? chunkResult : combiner.apply(result, chunkResult);
+            first = false;
+        }
+        return result;
+    }
+
+// MARK: - Private Methods
+
+    private static @NonNull Executor defaultExecutor() {
+        return ParallelWorkerThreadExecutor.compute();
+    }
+
+    private static @NonNull <T> List<T> randomAccess(@NonNull List<T> list) {
+        if (list == null) {
+            throw new NullPointerException("list is null");
+        }
+        return (list instanceof RandomAccess) ? list : new ArrayList<>(list);
+    }
+
+    private static void forRange(int count, @NonNull Executor executor, @NonNull RangeBody body) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count < 0");
+        }
+        if (executor == null) {
+            throw new NullPointerException("executor is null");
+        }
+
+        if (count <= SEQUENTIAL_CUTOFF || PARALLELISM < 2) {
+            body.run(0, count);
+            return;
+        }
+
+        RangeTask task = new RangeTask(count, body);
+        int helperCount = Math.min(PARALLELISM, (count + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE) - 1;
+        for (int idx = 0; idx < helperCount; ++idx) {
+            try {
+                executor.execute(task);
+            }
+            catch (RuntimeException e) {
+                // The calling thread does the work which the executor has not accepted
+                break;
+            }
+        }
+
+        task.run();
+        task.await();
+    }
+
+// MARK: - Inner Types
+
+    private interface RangeBody
+    {
+        void run(int from, int to);
+    }
+
+    private static final class RangeTask implements Runnable
+    {
+        RangeTask(int count, @NonNull RangeBody body) {
+            mCount = count;
+            mBody = body;
+        }
+
+        @Override
+        public void run() {
+            for (int from = claim(); from >= 0; from = claim()) {
+                int to = chunkEnd(from);
+                try {
+                    mBody.run(from, to);
+                }
+                catch (Throwable e) {
+                    mFailure.compareAndSet(null, e);
+
+                    // Skip the chunks which have not been claimed yet
+                    int next = mNextIndex.getAndSet(mCount);
+                    if (next < mCount) {
+                        finish(mCount - next);
+                    }
+                }
+                finally {
+                    finish(to - from);
+                }
+            }
+        }
+
+        void await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    mDoneLatch.await();
+                    break;
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            Throwable failure = mFailure.get();
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            if (failure != null) {
+                throw new RuntimeException(failure);
+            }
+        }
+
+        private int claim() {
+            while (true) {
+                int from = mNextIndex.get();
+                if (from >= mCount) {
+                    return -1;
+                }
+                if (mNextIndex.compareAndSet(from, chunkEnd(from))) {
+                    return from;
+                }
+            }
+        }
+
+        /**
+         * Returns the end of the chunk starting at the given index. The chunk size only depends
+         * on the start index, so every thread computes the same boundaries.
+         */
+        private int chunkEnd(int from) {
+            int size = Math.max(MIN_CHUNK_SIZE, (mCount - from) / (PARALLELISM * 2));
+            return Math.min(mCount, from + size);
+        }
+
+        private void finish(int count) {
+            if (mFinishedCount.addAndGet(count) == mCount) {
+                mDoneLatch.countDown();
+            }
+        }
+
+        private final int mCount;
+
+        private final RangeBody mBody;
+
+        private final AtomicInteger mNextIndex = new AtomicInteger();
+
+        private final AtomicInteger mFinishedCount = new AtomicInteger();
+
+        private final AtomicReference<Throwable> mFailure = new AtomicReference<>();
+
+        private final CountDownLatch mDoneLatch = new CountDownLatch(1);
+    }
+
+// MARK: - Constants
+
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    // The inputs up to this size are not worth the hand-off to other threads
+    private static final int SEQUENTIAL_CUTOFF = 256;
+
+    private static final int MIN_CHUNK_SIZE = 32;
+}
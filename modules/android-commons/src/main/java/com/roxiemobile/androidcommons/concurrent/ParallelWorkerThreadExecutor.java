@@ -1,12 +1,18 @@
 package com.roxiemobile.androidcommons.concurrent;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 
 import java.util.List;
 import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -15,7 +21,28 @@ import java.util.concurrent.atomic.AtomicInteger;
 /**
  * An executor service that executes its tasks on the background thread.
  * <p>
- * Shutting down this executor is not supported.
+ * By default the tasks are held in a single bounded queue shared by all worker threads. The
+ * {@link ExecutionMode#WorkStealing} mode keeps a separate deque per worker thread instead, which
+ * removes the contention on the single queue and never rejects tasks.
+ * <p>
+ * Tasks are split into {@link Priority} lanes, each lane is served in FIFO order and the higher
+ * priority lanes are served first. A task that waited in a lower priority lane for longer than
+ * {@value #AGING_INTERVAL_MILLIS} ms is served ahead of the higher priority lanes, so prefetch work
+ * cannot starve. A pool built with the {@link QueueMode#LockFree} queue serves all the tasks from
+ * a single lock-free FIFO queue instead.
+ * <p>
+ * The worker threads run at {@code THREAD_PRIORITY_BACKGROUND}, a task submitted with a
+ * {@link QosClass} runs at the thread priority of its class instead.
+ * <p>
+ * When a lane is full and the maximum number of threads is reached the {@link SaturationPolicy}
+ * of the executor decides what happens to the task, see {@link #setSaturationPolicy}. The
+ * work-stealing mode has no capacity limit and never saturates.
+ * <p>
+ * Blocking IO and CPU-bound work should not share threads, see {@link #io()} and {@link #compute()}.
+ * <p>
+ * Independent pools with their own thread naming, sizing and queue bounds are created with
+ * {@link Builder}, they can be drained with {@link #shutdown()} or stopped with
+ * {@link #shutdownNow()}. Shutting down the shared instance is not supported.
  */
 public final class ParallelWorkerThreadExecutor extends AbstractExecutorService
 {
@@ -25,83 +52,593 @@ public final class ParallelWorkerThreadExecutor extends AbstractExecutorService
         return SingletonHolder.SHARED_INSTANCE;
     }
 
+    /**
+     * Returns the shared executor for the blocking work, such as disk or network reads. The pool
+     * grows and shrinks after the measured blocked-time ratio of its tasks.
+     */
+    public static ParallelWorkerThreadExecutor io() {
+        return IoHolder.IO_INSTANCE;
+    }
+
+    /**
+     * Returns the shared executor for the CPU-bound work, such as parsing. The pool is pinned to
+     * the number of CPU cores.
+     */
+    public static ParallelWorkerThreadExecutor compute() {
+        return ComputeHolder.COMPUTE_INSTANCE;
+    }
+
+    /**
+     * Creates a new executor that is independent from the shared instance.
+     */
+    public static ParallelWorkerThreadExecutor newInstance(@NonNull ExecutionMode mode) {
+        return new Builder().setExecutionMode(mode).build();
+    }
+
     private static class SingletonHolder {
-        private static final ParallelWorkerThreadExecutor SHARED_INSTANCE = new ParallelWorkerThreadExecutor();
+        private static final ParallelWorkerThreadExecutor SHARED_INSTANCE = newSharedInstance();
+    }
+
+    private static class IoHolder {
+        private static final ParallelWorkerThreadExecutor IO_INSTANCE = new ParallelWorkerThreadExecutor(new Builder()
+                .setName("IoExecutor")
+                .setAdaptivePoolSize(CPU_COUNT, IO_MAXIMUM_POOL_SIZE)
+                .setKeepAlive(IO_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS), true);
+    }
+
+    private static class ComputeHolder {
+        private static final ParallelWorkerThreadExecutor COMPUTE_INSTANCE = new ParallelWorkerThreadExecutor(new Builder()
+                .setName("ComputeExecutor")
+                .setCorePoolSize(CPU_COUNT)
+                .setMaximumPoolSize(CPU_COUNT), true);
+    }
+
+    private ParallelWorkerThreadExecutor(@NonNull Builder builder, boolean shared) {
+        mName = builder.mName;
+        mExecutionMode = builder.mExecutionMode;
+        mShared = shared;
+
+        ThreadFactory threadFactory = newThreadFactory(builder.mName, builder.mThreadPriority);
+        switch (mExecutionMode) {
+            case WorkStealing:
+                mExecutor = new WorkStealingExecutor(builder.mCorePoolSize,
+                        builder.mAgingIntervalMillis, TimeUnit.MILLISECONDS, threadFactory);
+                break;
+
+            case Pooled:
+            default:
+                BlockingQueue<Runnable> workQueue = (builder.mQueueMode == QueueMode.LockFree)
+                        ? new MpmcBlockingQueue<>(builder.mQueueCapacity * PrioritizedTask.LANE_COUNT)
+                        : new LaneQueue(builder.mQueueCapacity, builder.mAgingIntervalMillis, TimeUnit.MILLISECONDS);
+                RejectedExecutionHandler handler =
+                        (runnable, executor) -> mSaturationPolicy.saturated(runnable, executor, mSaturationStats);
+
+                mExecutor = builder.mAdaptivePoolSize
+                        ? new AdaptiveThreadPoolExecutor(builder.mCorePoolSize, builder.mMaximumPoolSize,
+                                builder.mKeepAliveMillis, TimeUnit.MILLISECONDS, workQueue, threadFactory, handler)
+                        : new ThreadPoolExecutor(builder.mCorePoolSize, builder.mMaximumPoolSize,
+                                builder.mKeepAliveMillis, TimeUnit.MILLISECONDS, workQueue, threadFactory, handler);
+                break;
+        }
+    }
+
+    private static ParallelWorkerThreadExecutor newSharedInstance() {
+        synchronized (sLock) {
+            sSharedInstanceCreated = true;
+            return new ParallelWorkerThreadExecutor(new Builder().setExecutionMode(sSharedExecutionMode), true);
+        }
+    }
+
+// MARK: - Properties
+
+    /**
+     * Selects the execution mode of the shared instance. Must be called before the first call
+     * to {@link #shared()}, e.g. from {@code Application.onCreate()}.
+     */
+    public static void setSharedExecutionMode(@NonNull ExecutionMode mode) {
+        if (mode == null) {
+            throw new NullPointerException("mode is null");
+        }
+
+        synchronized (sLock) {
+            if (sSharedInstanceCreated && sSharedExecutionMode != mode) {
+                throw new IllegalStateException("Shared executor is already created in " +
+                        sSharedExecutionMode + " mode, cannot switch to " + mode + " mode");
+            }
+            sSharedExecutionMode = mode;
+        }
+    }
+
+    /**
+     * Replaces the shared instance as the default executor of the library components, such as
+     * {@link Promise}, {@link SingleFlight}, {@link KeyedSerialExecutor}, {@link CancellationScope}
+     * and {@code StartupGraph}, so a test can run their tasks in virtual time. The components pick
+     * the default executor when they are created, {@code Promise} on every call. The shared
+     * instance itself is not affected.
+     */
+    @VisibleForTesting
+    public static void setDefaultExecutor(@Nullable Executor executor) {
+        sDefaultExecutor = executor;
+    }
+
+    /**
+     * Returns the executor the library components run their tasks on by default, which is the
+     * shared instance unless it has been replaced with {@link #setDefaultExecutor}.
+     */
+    public static @NonNull Executor defaultExecutor() {
+        Executor executor = sDefaultExecutor;
+        return (executor != null) ? executor : shared();
+    }
+
+    /**
+     * Same as {@link #defaultExecutor()}, but the tasks run in the given lane of the shared instance.
+     */
+    public static @NonNull Executor defaultExecutor(@NonNull final Priority priority) {
+        if (priority == null) {
+            throw new NullPointerException("priority is null");
+        }
+
+        Executor executor = sDefaultExecutor;
+        return (executor != null) ? executor : runnable -> shared().execute(runnable, priority);
+    }
+
+    /**
+     * Returns the name of this executor, which prefixes the names of its threads.
+     */
+    public @NonNull String getName() {
+        return mName;
+    }
+
+    public @NonNull ExecutionMode getExecutionMode() {
+        return mExecutionMode;
+    }
+
+    /**
+     * Returns the current number of threads in the pool.
+     */
+    public int getPoolSize() {
+        return (mExecutor instanceof ThreadPoolExecutor)
+                ? ((ThreadPoolExecutor) mExecutor).getPoolSize()
+                : ((WorkStealingExecutor) mExecutor).getPoolSize();
+    }
+
+    /**
+     * Returns the measured share of time the tasks spent blocked, from 0 to 1, or -1 if the pool is
+     * not adaptive or has not been measured yet.
+     */
+    public double getBlockedRatio() {
+        return (mExecutor instanceof AdaptiveThreadPoolExecutor)
+                ? ((AdaptiveThreadPoolExecutor) mExecutor).getBlockedRatio()
+                : -1;
     }
 
-    private ParallelWorkerThreadExecutor() {
-        // Do nothing
+    /**
+     * Sets the policy applied to the tasks that do not fit into the saturated executor. The
+     * default policy is {@link SaturationPolicy#abort()}.
+     *
+     * @throws IllegalArgumentException if the policy needs the priority lanes and the executor is
+     *                                  built with the {@link QueueMode#LockFree} queue
+     */
+    public void setSaturationPolicy(@NonNull SaturationPolicy policy) {
+        if (policy == null) {
+            throw new NullPointerException("policy is null");
+        }
+        if (policy.requiresLanes() && (mExecutor instanceof ThreadPoolExecutor)
+                && !(((ThreadPoolExecutor) mExecutor).getQueue() instanceof LaneQueue)) {
+            throw new IllegalArgumentException("Policy requires the " + QueueMode.Lanes + " queue mode");
+        }
+        mSaturationPolicy = policy;
+    }
+
+    public @NonNull SaturationPolicy getSaturationPolicy() {
+        return mSaturationPolicy;
+    }
+
+    /**
+     * Returns the live saturation counters of this executor.
+     */
+    public @NonNull SaturationStats getSaturationStats() {
+        return mSaturationStats;
+    }
+
+    /**
+     * Returns the live counters of the thread priority switches made for the QoS classes.
+     */
+    public @NonNull QosStats getQosStats() {
+        return mQosStats;
+    }
+
+    /**
+     * Enables or disables the queue-wait and run-time metrics. Disabling drops the recorded values.
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        synchronized (mMetricsLock) {
+            if (enabled && mMetrics == null) {
+                mMetrics = new ExecutorMetrics(mName, this::getQueueDepth);
+            }
+            else if (!enabled) {
+                mMetrics = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the metrics of this executor, or {@code null} if they are disabled.
+     */
+    public @Nullable ExecutorMetrics getMetrics() {
+        return mMetrics;
     }
 
 // MARK: - Methods
 
+    /**
+     * Executes the given task in the {@link Priority#Normal} lane.
+     */
     @Override
     public void execute(@NonNull Runnable runnable) {
-        sThreadPoolExecutor.execute(runnable);
+        execute(runnable, Priority.Normal);
+    }
+
+    /**
+     * Executes the given task in the lane of the given priority.
+     */
+    public void execute(@NonNull Runnable runnable, @NonNull Priority priority) {
+        execute(runnable, priority, null);
+    }
+
+    /**
+     * Executes the given task in the lane of the given priority, at the thread priority of the
+     * given QoS class. A {@code null} class keeps the thread priority of the executor.
+     */
+    public void execute(@NonNull Runnable runnable, @NonNull Priority priority, @Nullable QosClass qosClass) {
+        if (runnable == null || priority == null) {
+            throw new NullPointerException();
+        }
+        mExecutor.execute(new PrioritizedTask(runnable, priority, qosClass, mMetrics, mQosStats));
+    }
+
+    /**
+     * Submits a value-returning task for execution in the lane of the given priority.
+     */
+    public @NonNull <T> Future<T> submit(@NonNull Callable<T> task, @NonNull Priority priority) {
+        return submit(task, priority, null);
+    }
+
+    /**
+     * Submits a value-returning task for execution in the lane of the given priority, at the
+     * thread priority of the given QoS class.
+     */
+    public @NonNull <T> Future<T> submit(@NonNull Callable<T> task, @NonNull Priority priority, @Nullable QosClass qosClass) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+
+        RunnableFuture<T> future = newTaskFor(task);
+        execute(future, priority, qosClass);
+        return future;
+    }
+
+    /**
+     * Submits a Runnable task for execution in the lane of the given priority.
+     */
+    public @NonNull Future<?> submit(@NonNull Runnable task, @NonNull Priority priority) {
+        return submit(task, priority, null);
     }
 
     /**
-     * Not supported and throws an exception when used.
+     * Submits a Runnable task for execution in the lane of the given priority, at the thread
+     * priority of the given QoS class.
+     */
+    public @NonNull Future<?> submit(@NonNull Runnable task, @NonNull Priority priority, @Nullable QosClass qosClass) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+
+        RunnableFuture<Void> future = newTaskFor(task, null);
+        execute(future, priority, qosClass);
+        return future;
+    }
+
+    /**
+     * Removes the cancelled futures from the queue, so they neither take capacity nor a worker.
+     *
+     * @return The number of removed tasks
+     */
+    public int purge() {
+        if (mExecutor instanceof WorkStealingExecutor) {
+            return ((WorkStealingExecutor) mExecutor).purge();
+        }
+
+        int count = 0;
+        BlockingQueue<Runnable> queue = ((ThreadPoolExecutor) mExecutor).getQueue();
+        for (Runnable runnable : queue) {
+            if (PrioritizedTask.isCancelledFuture(runnable) && queue.remove(runnable)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Stops accepting new tasks and lets the queued ones drain.
+     *
+     * @throws UnsupportedOperationException if called on the shared instance
      */
-    @Deprecated
     @Override
     public void shutdown() {
-        throw new UnsupportedOperationException();
+        checkNotShared();
+        mExecutor.shutdown();
     }
 
     /**
-     * Not supported and throws an exception when used.
+     * Stops accepting new tasks, interrupts the running ones and returns the tasks which never
+     * started, in the form they were submitted.
+     *
+     * @throws UnsupportedOperationException if called on the shared instance
      */
-    @Deprecated
     @Override
     public @NonNull List<Runnable> shutdownNow() {
-        throw new UnsupportedOperationException();
+        checkNotShared();
+
+        List<Runnable> tasks = mExecutor.shutdownNow();
+        for (int idx = 0; idx < tasks.size(); ++idx) {
+            Runnable task = tasks.get(idx);
+            if (task instanceof PrioritizedTask) {
+                tasks.set(idx, ((PrioritizedTask) task).getRunnable());
+            }
+        }
+        return tasks;
     }
 
     @Override
     public boolean isShutdown() {
-        return false;
+        return mExecutor.isShutdown();
     }
 
     @Override
     public boolean isTerminated() {
-        return false;
+        return mExecutor.isTerminated();
     }
 
-    /**
-     * Not supported and throws an exception when used.
-     */
-    @Deprecated
     @Override
-    public boolean awaitTermination(long l, @NonNull TimeUnit timeUnit) throws InterruptedException {
-        throw new UnsupportedOperationException();
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        return mExecutor.awaitTermination(timeout, unit);
+    }
+
+// MARK: - Private Methods
+
+    private void checkNotShared() {
+        if (mShared) {
+            throw new UnsupportedOperationException("Shared executor cannot be shut down");
+        }
+    }
+
+    private static @NonNull ThreadFactory newThreadFactory(@NonNull final String name, final int threadPriority) {
+        final AtomicInteger count = new AtomicInteger(1);
+        return runnable -> new Thread(() -> {
+            android.os.Process.setThreadPriority(threadPriority);
+            runnable.run();
+        }, name + " #" + count.getAndIncrement());
+    }
+
+    private int getQueueDepth() {
+        return (mExecutor instanceof ThreadPoolExecutor)
+                ? ((ThreadPoolExecutor) mExecutor).getQueue().size()
+                : ((WorkStealingExecutor) mExecutor).getQueuedTaskCount();
     }
 
 // MARK: - Constants
 
     private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
     private static final int CORE_POOL_SIZE = CPU_COUNT + 1;
+    private static final int IO_MAXIMUM_POOL_SIZE = Math.max(CPU_COUNT * 8, 32);
+    private static final long IO_KEEP_ALIVE_MILLIS = 30_000;
     private static final int MAXIMUM_POOL_SIZE = CPU_COUNT * 2 + 1;
-    private static final int KEEP_ALIVE = 1;
+    private static final long KEEP_ALIVE_MILLIS = 1000;
+    private static final int POOL_WORK_QUEUE_CAPACITY = 128;
+    private static final int AGING_INTERVAL_MILLIS = 500;
 
-// MARK: - Variables
+// MARK: - Inner Types
+
+    public enum ExecutionMode
+    {
+        // A fixed thread pool over a single bounded FIFO queue
+        Pooled,
+        // A fixed set of worker threads with per-worker deques and work stealing
+        WorkStealing
+    }
+
+    public enum QueueMode
+    {
+        // A bounded lane per priority behind a single lock, the lower lanes age into the higher ones
+        Lanes,
+        // A single bounded lock-free FIFO queue, the priorities are not taken into account
+        LockFree
+    }
+
+    public enum Priority
+    {
+        // Work the user is waiting for right now
+        Interactive,
+        // Regular background work, used by execute(Runnable)
+        Normal,
+        // Speculative work which result may never be needed
+        Prefetch
+    }
+
+    public enum QosClass
+    {
+        // Work that updates the UI the user is looking at
+        UserInteractive(android.os.Process.THREAD_PRIORITY_FOREGROUND),
+        // Work the user has started and waits for
+        UserInitiated(android.os.Process.THREAD_PRIORITY_DEFAULT),
+        // Long-running work the user is aware of, such as downloads
+        Utility((android.os.Process.THREAD_PRIORITY_DEFAULT + android.os.Process.THREAD_PRIORITY_BACKGROUND) / 2),
+        // Work the user is not aware of, such as prefetching and cleanup
+        Background(android.os.Process.THREAD_PRIORITY_BACKGROUND);
+
+        QosClass(int threadPriority) {
+            mThreadPriority = threadPriority;
+        }
+
+        /**
+         * Returns the Linux priority of the thread, see {@link android.os.Process#setThreadPriority(int)}.
+         */
+        public int getThreadPriority() {
+            return mThreadPriority;
+        }
+
+        private final int mThreadPriority;
+    }
 
-    private static final ThreadFactory sThreadFactory = new ThreadFactory() {
-        private final AtomicInteger mCount = new AtomicInteger(1);
+    /**
+     * Builds an executor that is independent from the shared instance. Every setting defaults to
+     * the value of the shared instance.
+     */
+    public static final class Builder
+    {
+        public @NonNull Builder setName(@NonNull String name) {
+            if (name == null) {
+                throw new NullPointerException("name is null");
+            }
+            mName = name;
+            return this;
+        }
+
+        public @NonNull Builder setExecutionMode(@NonNull ExecutionMode mode) {
+            if (mode == null) {
+                throw new NullPointerException("mode is null");
+            }
+            mExecutionMode = mode;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads kept alive, which is the number of worker threads in the
+         * {@link ExecutionMode#WorkStealing} mode.
+         */
+        public @NonNull Builder setCorePoolSize(int size) {
+            if (size < 1) {
+                throw new IllegalArgumentException("size < 1");
+            }
+            mCorePoolSize = size;
+            mMaximumPoolSize = Math.max(mMaximumPoolSize, size);
+            return this;
+        }
+
+        public @NonNull Builder setMaximumPoolSize(int size) {
+            if (size < 1) {
+                throw new IllegalArgumentException("size < 1");
+            }
+            mMaximumPoolSize = size;
+            mCorePoolSize = Math.min(mCorePoolSize, size);
+            return this;
+        }
 
-        public Thread newThread(final @NonNull Runnable runnable) {
-            String threadName = ParallelWorkerThreadExecutor.class.getSimpleName() + " #" + mCount.getAndIncrement();
+        /**
+         * Lets the {@link ExecutionMode#Pooled} pool resize itself between the given bounds after
+         * the measured blocked-time ratio of its tasks. Use it for the blocking work only.
+         */
+        public @NonNull Builder setAdaptivePoolSize(int minPoolSize, int maxPoolSize) {
+            if (minPoolSize < 1 || maxPoolSize < minPoolSize) {
+                throw new IllegalArgumentException("Invalid pool size bounds: " + minPoolSize + ".." + maxPoolSize);
+            }
+            mCorePoolSize = minPoolSize;
+            mMaximumPoolSize = maxPoolSize;
+            mAdaptivePoolSize = true;
+            return this;
+        }
+
+        public @NonNull Builder setKeepAlive(long time, @NonNull TimeUnit unit) {
+            if (time < 0) {
+                throw new IllegalArgumentException("time < 0");
+            }
+            mKeepAliveMillis = unit.toMillis(time);
+            return this;
+        }
 
-            return new Thread(() -> {
-                android.os.Process.setThreadPriority(android.os.Process.THREAD_PRIORITY_BACKGROUND);
-                runnable.run();
-            }, threadName);
+        /**
+         * Sets the queue of the {@link ExecutionMode#Pooled} mode. The {@link QueueMode#LockFree}
+         * queue lets many producers submit without contention, at the cost of the priority lanes.
+         */
+        public @NonNull Builder setQueueMode(@NonNull QueueMode mode) {
+            if (mode == null) {
+                throw new NullPointerException("mode is null");
+            }
+            mQueueMode = mode;
+            return this;
         }
-    };
 
-    private static final BlockingQueue<Runnable> sPoolWorkQueue = new LinkedBlockingQueue<>(128);
+        /**
+         * Sets the capacity of every priority lane in the {@link ExecutionMode#Pooled} mode, the
+         * {@link QueueMode#LockFree} queue holds as many tasks as all the lanes together.
+         */
+        public @NonNull Builder setQueueCapacity(int capacity) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("capacity < 1");
+            }
+            mQueueCapacity = capacity;
+            return this;
+        }
+
+        public @NonNull Builder setAgingInterval(long time, @NonNull TimeUnit unit) {
+            if (time < 0) {
+                throw new IllegalArgumentException("time < 0");
+            }
+            mAgingIntervalMillis = unit.toMillis(time);
+            return this;
+        }
+
+        /**
+         * Sets the Linux priority of the threads, see {@link android.os.Process#setThreadPriority(int)}.
+         */
+        public @NonNull Builder setThreadPriority(int priority) {
+            mThreadPriority = priority;
+            return this;
+        }
+
+        public @NonNull ParallelWorkerThreadExecutor build() {
+            return new ParallelWorkerThreadExecutor(this, false);
+        }
+
+        private String mName = ParallelWorkerThreadExecutor.class.getSimpleName();
+        private ExecutionMode mExecutionMode = ExecutionMode.Pooled;
+        private int mCorePoolSize = CORE_POOL_SIZE;
+        private int mMaximumPoolSize = MAXIMUM_POOL_SIZE;
+        private boolean mAdaptivePoolSize = false;
+        private long mKeepAliveMillis = KEEP_ALIVE_MILLIS;
+        private QueueMode mQueueMode = QueueMode.Lanes;
+        private int mQueueCapacity = POOL_WORK_QUEUE_CAPACITY;
+        private long mAgingIntervalMillis = AGING_INTERVAL_MILLIS;
+        private int mThreadPriority = android.os.Process.THREAD_PRIORITY_BACKGROUND;
+    }
+
+// MARK: - Variables
+
+    private static final Object sLock = new Object();
+
+    private static ExecutionMode sSharedExecutionMode = ExecutionMode.Pooled;
+
+    private static boolean sSharedInstanceCreated = false;
+
+    private static volatile Executor sDefaultExecutor;
+
+    private final String mName;
+
+    private final ExecutionMode mExecutionMode;
+
+    private final boolean mShared;
+
+    private volatile SaturationPolicy mSaturationPolicy = SaturationPolicy.abort();
+
+    private final SaturationStats mSaturationStats = new SaturationStats();
+
+    private final QosStats mQosStats = new QosStats();
+
+    private volatile ExecutorMetrics mMetrics;
+
+    private final Object mMetricsLock = new Object();
 
     // An {@link Executor} that can be used to execute tasks in parallel.
-    private final Executor sThreadPoolExecutor = new ThreadPoolExecutor(CORE_POOL_SIZE, MAXIMUM_POOL_SIZE,
-            KEEP_ALIVE, TimeUnit.SECONDS, sPoolWorkQueue, sThreadFactory);
+    private final ExecutorService mExecutor;
 }
@@ -0,0 +1,149 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.roxiemobile.androidcommons.concurrent.ParallelWorkerThreadExecutor.Priority;
+import com.roxiemobile.androidcommons.concurrent.ParallelWorkerThreadExecutor.QosClass;
+
+import java.util.concurrent.Future;
+
+/**
+ * A task bound to a priority lane, remembers the time it was enqueued at and reports its wait
+ * and run times to the executor metrics if they are enabled.
+ * <p>
+ * A task with a {@link QosClass} runs at the thread priority of its class, the worker thread is
+ * switched back to its own priority afterwards. The switch is skipped if the thread already runs
+ * at the required priority.
+ */
+final class PrioritizedTask implements Runnable
+{
+// MARK: - Construction
+
+    PrioritizedTask(@NonNull Runnable runnable, @NonNull Priority priority) {
+        this(runnable, priority, null, null, null);
+    }
+
+    PrioritizedTask(@NonNull Runnable runnable, @NonNull Priority priority, @Nullable QosClass qosClass,
+            @Nullable ExecutorMetrics metrics, @Nullable QosStats qosStats) {
+        mRunnable = runnable;
+        mPriority = priority;
+        mQosClass = qosClass;
+        mMetrics = metrics;
+        mQosStats = qosStats;
+        mEnqueueTime = System.nanoTime();
+    }
+
+// MARK: - Properties
+
+    @NonNull Runnable getRunnable() {
+        return mRunnable;
+    }
+
+    @NonNull Priority getPriority() {
+        return mPriority;
+    }
+
+    @Nullable QosClass getQosClass() {
+        return mQosClass;
+    }
+
+    long getEnqueueTime() {
+        return mEnqueueTime;
+    }
+
+// MARK: - Methods
+
+    @Override
+    public void run() {
+        if (mQosClass == null) {
+            runTask();
+            return;
+        }
+
+        // Read on every task, a task may have changed the priority of its thread behind our back
+        int basePriority = Process.getThreadPriority(Process.myTid());
+        int taskPriority = mQosClass.getThreadPriority();
+
+        if (basePriority == taskPriority) {
+            if (mQosStats != null) {
+                mQosStats.mSkippedCount.incrementAndGet();
+            }
+            runTask();
+            return;
+        }
+
+        setThreadPriority(taskPriority);
+        try {
+            runTask();
+        }
+        finally {
+            setThreadPriority(basePriority);
+        }
+    }
+
+    /**
+     * Returns the lane index of the given task, tasks without a lane belong to the normal one.
+     */
+    static int laneOf(@NonNull Runnable runnable) {
+        return (runnable instanceof PrioritizedTask)
+                ? ((PrioritizedTask) runnable).mPriority.ordinal()
+                : Priority.Normal.ordinal();
+    }
+
+    /**
+     * Checks whether the given task has waited in its lane for longer than the aging interval.
+     */
+    static boolean isAged(@NonNull Runnable runnable, long now, long agingNanos) {
+        return (runnable instanceof PrioritizedTask)
+                && (now - ((PrioritizedTask) runnable).mEnqueueTime) >= agingNanos;
+    }
+
+    /**
+     * Checks whether the given task is, or wraps, a cancelled future.
+     */
+    static boolean isCancelledFuture(@NonNull Runnable runnable) {
+        Runnable task = (runnable instanceof PrioritizedTask) ? ((PrioritizedTask) runnable).mRunnable : runnable;
+        return (task instanceof Future) && ((Future<?>) task).isCancelled();
+    }
+
+// MARK: - Private Methods
+
+    private void runTask() {
+        if (mMetrics != null) {
+            mMetrics.run(mRunnable, mEnqueueTime);
+        }
+        else {
+            mRunnable.run();
+        }
+    }
+
+    private void setThreadPriority(int priority) {
+        long startTime = System.nanoTime();
+        Process.setThreadPriority(priority);
+
+        if (mQosStats != null) {
+            mQosStats.mSwitchCount.incrementAndGet();
+            mQosStats.mSwitchTimeNanos.addAndGet(System.nanoTime() - startTime);
+        }
+    }
+
+// MARK: - Constants
+
+    static final int LANE_COUNT = Priority.values().length;
+
+// MARK: - Variables
+
+    private final Runnable mRunnable;
+
+    private final Priority mPriority;
+
+    private final QosClass mQosClass;
+
+    private final ExecutorMetrics mMetrics;
+
+    private final QosStats mQosStats;
+
+    private final long mEnqueueTime;
+}
@@ -0,0 +1,402 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.annimon.stream.function.BiFunction;
+import com.annimon.stream.function.Consumer;
+import com.annimon.stream.function.Function;
+import com.annimon.stream.function.Supplier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A composable future for API levels without {@code CompletableFuture}.
+ * <p>
+ * Every stage runs its function on an explicit executor. The overloads without an executor use
+ * {@link ParallelWorkerThreadExecutor#defaultExecutor()}, pass {@link MainThreadExecutor#shared()} to hop
+ * to the main thread. A failure skips the following stages and completes them with the same
+ * cause, without hopping to their executors.
+ *
+ * @param <T> The type of the result
+ */
+public final class Promise<T> implements Future<T>
+{
+// MARK: - Construction
+
+    /**
+     * Creates an incomplete promise, complete it with {@link #complete} or {@link #completeExceptionally}.
+     */
+    public Promise() {
+        // Do nothing
+    }
+
+    public static @NonNull <T> Promise<T> completed(@Nullable T value) {
+        Promise<T> promise = new Promise<>();
+        promise.complete(value);
+        return promise;
+    }
+
+    public static @NonNull <T> Promise<T> failed(@NonNull Throwable cause) {
+        Promise<T> promise = new Promise<>();
+        promise.completeExceptionally(cause);
+        return promise;
+    }
+
+    /**
+     * Returns a promise completed with the value of the supplier, run on the worker executor.
+     */
+    public static @NonNull <T> Promise<T> supplyAsync(@NonNull Supplier<T> supplier) {
+        return supplyAsync(supplier, defaultExecutor());
+    }
+
+    public static @NonNull <T> Promise<T> supplyAsync(@NonNull final Supplier<T> supplier, @NonNull Executor executor) {
+        checkNotNull(supplier, executor);
+
+        final Promise<T> promise = new Promise<>();
+        promise.dispatch(executor, () -> {
+            try {
+                promise.complete(supplier.get());
+            }
+            catch (Throwable e) {
+                promise.completeExceptionally(e);
+            }
+        });
+        return promise;
+    }
+
+    /**
+     * Returns a promise completed when all given promises are completed, or failed with the
+     * cause of the first failed one.
+     */
+    public static @NonNull Promise<Void> allOf(@NonNull final Promise<?>... promises) {
+        final Promise<Void> result = new Promise<>();
+        if (promises.length == 0) {
+            result.complete(null);
+            return result;
+        }
+
+        final AtomicInteger remaining = new AtomicInteger(promises.length);
+        for (final Promise<?> promise : promises) {
+            promise.onComplete(() -> {
+                if (promise.mCause != null) {
+                    result.completeExceptionally(promise.mCause);
+                }
+                else if (remaining.decrementAndGet() == 0) {
+                    result.complete(null);
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Returns a promise completed with the outcome of the first completed of the given promises.
+     */
+    public static @NonNull Promise<Object> anyOf(@NonNull final Promise<?>... promises) {
+        final Promise<Object> result = new Promise<>();
+        for (final Promise<?> promise : promises) {
+            promise.onComplete(() -> result.completeFrom(promise));
+        }
+        return result;
+    }
+
+// MARK: - Methods
+
+    /**
+     * Completes this promise with the given value.
+     *
+     * @return {@code true} if this call has completed the promise
+     */
+    public boolean complete(@Nullable T value) {
+        return finish(value, null);
+    }
+
+    /**
+     * Completes this promise with the given failure.
+     *
+     * @return {@code true} if this call has completed the promise
+     */
+    public boolean completeExceptionally(@NonNull Throwable cause) {
+        if (cause == null) {
+            throw new NullPointerException("cause is null");
+        }
+        return finish(null, cause);
+    }
+
+    public @NonNull <U> Promise<U> thenApply(@NonNull Function<? super T, ? extends U> function) {
+        return thenApply(function, defaultExecutor());
+    }
+
+    /**
+     * Returns a promise completed with the result of the function applied to the value of this
+     * promise on the given executor.
+     */
+    public @NonNull <U> Promise<U> thenApply(@NonNull final Function<? super T, ? extends U> function, @NonNull final Executor executor) {
+        checkNotNull(function, executor);
+
+        final Promise<U> result = new Promise<>();
+        onComplete(() -> {
+            if (mCause != null) {
+                result.completeExceptionally(mCause);
+                return;
+            }
+
+            result.dispatch(executor, () -> {
+                try {
+                    result.complete(function.apply(mValue));
+                }
+                catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        });
+        return result;
+    }
+
+    public @NonNull Promise<Void> thenAccept(@NonNull Consumer<? super T> consumer) {
+        return thenAccept(consumer, defaultExecutor());
+    }
+
+    /**
+     * Returns a promise completed after the consumer has received the value of this promise on the
+     * given executor.
+     */
+    public @NonNull Promise<Void> thenAccept(@NonNull final Consumer<? super T> consumer, @NonNull Executor executor) {
+        checkNotNull(consumer, executor);
+
+        return thenApply(value -> {
+            consumer.accept(value);
+            return null;
+        }, executor);
+    }
+
+    public @NonNull <U> Promise<U> thenCompose(@NonNull Function<? super T, Promise<U>> function) {
+        return thenCompose(function, defaultExecutor());
+    }
+
+    /**
+     * Returns a promise completed with the outcome of the promise returned by the function, which
+     * is applied to the value of this promise on the given executor.
+     */
+    public @NonNull <U> Promise<U> thenCompose(@NonNull final Function<? super T, Promise<U>> function, @NonNull final Executor executor) {
+        checkNotNull(function, executor);
+
+        final Promise<U> result = new Promise<>();
+        onComplete(() -> {
+            if (mCause != null) {
+                result.completeExceptionally(mCause);
+                return;
+            }
+
+            result.dispatch(executor, () -> {
+                try {
+                    final Promise<U> next = function.apply(mValue);
+                    if (next == null) {
+                        throw new NullPointerException("Function returned null promise");
+                    }
+                    next.onComplete(() -> result.completeFrom(next));
+                }
+                catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        });
+        return result;
+    }
+
+    public @NonNull <U, R> Promise<R> combine(@NonNull Promise<U> other, @NonNull BiFunction<? super T, ? super U, ? extends R> function) {
+        return combine(other, function, defaultExecutor());
+    }
+
+    /**
+     * Returns a promise completed with the result of the function applied to the values of this
+     * and the other promise on the given executor.
+     */
+    public @NonNull <U, R> Promise<R> combine(@NonNull final Promise<U> other,
+            @NonNull final BiFunction<? super T, ? super U, ? extends R> function, @NonNull Executor executor) {
+        checkNotNull(other, function);
+
+        return allOf(this, other).thenApply(ignored -> function.apply(mValue, other.mValue), executor);
+    }
+
+    /**
+     * Returns a promise completed with the value of this promise, or with the result of the
+     * function applied to the failure of this promise on the calling or completing thread.
+     */
+    public @NonNull Promise<T> exceptionally(@NonNull final Function<Throwable, ? extends T> function) {
+        checkNotNull(function, function);
+
+        final Promise<T> result = new Promise<>();
+        onComplete(() -> {
+            if (mCause == null) {
+                result.complete(mValue);
+                return;
+            }
+
+            try {
+                result.complete(function.apply(mCause));
+            }
+            catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Completes this promise with a {@link CancellationException}. Running stages are not interrupted.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return completeExceptionally(new CancellationException());
+    }
+
+    @Override
+    public boolean isCancelled() {
+        synchronized (mLock) {
+            return mCause instanceof CancellationException;
+        }
+    }
+
+    @Override
+    public boolean isDone() {
+        synchronized (mLock) {
+            return mDone;
+        }
+    }
+
+    public boolean isCompletedExceptionally() {
+        synchronized (mLock) {
+            return mDone && mCause != null;
+        }
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        synchronized (mLock) {
+            while (!mDone) {
+                mLock.wait();
+            }
+        }
+        return report();
+    }
+
+    @Override
+    public T get(long timeout, @NonNull TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (mLock) {
+            while (!mDone) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TimeoutException();
+                }
+                TimeUnit.NANOSECONDS.timedWait(mLock, remaining);
+            }
+        }
+        return report();
+    }
+
+// MARK: - Private Methods
+
+    private static @NonNull Executor defaultExecutor() {
+        return ParallelWorkerThreadExecutor.defaultExecutor();
+    }
+
+    private static void checkNotNull(@Nullable Object object1, @Nullable Object object2) {
+        if (object1 == null || object2 == null) {
+            throw new NullPointerException();
+        }
+    }
+
+    private boolean finish(@Nullable T value, @Nullable Throwable cause) {
+        List<Runnable> callbacks;
+        synchronized (mLock) {
+            if (mDone) {
+                return false;
+            }
+
+            mValue = value;
+            mCause = cause;
+            mDone = true;
+            mLock.notifyAll();
+
+            callbacks = mCallbacks;
+            mCallbacks = null;
+        }
+
+        if (callbacks != null) {
+            for (Runnable callback : callbacks) {
+                callback.run();
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void completeFrom(@NonNull Promise<?> other) {
+        if (other.mCause != null) {
+            completeExceptionally(other.mCause);
+        }
+        else {
+            complete((T) other.mValue);
+        }
+    }
+
+    /**
+     * Runs the callback on the completing thread once this promise is completed, or right away
+     * on the calling thread if it is completed already.
+     */
+    private void onComplete(@NonNull Runnable callback) {
+        synchronized (mLock) {
+            if (!mDone) {
+                if (mCallbacks == null) {
+                    mCallbacks = new ArrayList<>(2);
+                }
+                mCallbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    private void dispatch(@NonNull Executor executor, @NonNull Runnable runnable) {
+        try {
+            executor.execute(runnable);
+        }
+        catch (Throwable e) {
+            completeExceptionally(e);
+        }
+    }
+
+    private T report() throws ExecutionException {
+        if (mCause instanceof CancellationException) {
+            throw (CancellationException) mCause;
+        }
+        if (mCause != null) {
+            throw new ExecutionException(mCause);
+        }
+        return mValue;
+    }
+
+// MARK: - Variables
+
+    private final Object mLock = new Object();
+
+    // Written once under mLock before mDone is set, read after the completion is observed
+    private T mValue;
+
+    private Throwable mCause;
+
+    private boolean mDone = false;
+
+    private List<Runnable> mCallbacks;
+}
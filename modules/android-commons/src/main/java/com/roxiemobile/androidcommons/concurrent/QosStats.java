@@ -0,0 +1,65 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the thread priority switches made for the tasks with a QoS class.
+ * <p>
+ * The counters are live and can be read at any time from any thread.
+ */
+public final class QosStats
+{
+// MARK: - Construction
+
+    QosStats() {
+        // Do nothing
+    }
+
+// MARK: - Properties
+
+    /**
+     * Returns the number of thread priority switches, two per task that needed one.
+     */
+    public long getSwitchCount() {
+        return mSwitchCount.get();
+    }
+
+    /**
+     * Returns the number of tasks that ran without a switch, because the thread already had their priority.
+     */
+    public long getSkippedCount() {
+        return mSkippedCount.get();
+    }
+
+    /**
+     * Returns the total time spent switching the thread priority.
+     */
+    public long getSwitchTimeNanos() {
+        return mSwitchTimeNanos.get();
+    }
+
+    /**
+     * Returns the mean time of one thread priority switch.
+     */
+    public long getMeanSwitchTimeNanos() {
+        long count = mSwitchCount.get();
+        return (count > 0) ? mSwitchTimeNanos.get() / count : 0L;
+    }
+
+    @Override
+    public String toString() {
+        return "QosStats{" +
+                "switches=" + getSwitchCount() +
+                ", skipped=" + getSkippedCount() +
+                ", meanSwitchNanos=" + getMeanSwitchTimeNanos() +
+                '}';
+    }
+
+// MARK: - Variables
+
+    final AtomicLong mSwitchCount = new AtomicLong();
+
+    final AtomicLong mSkippedCount = new AtomicLong();
+
+    final AtomicLong mSwitchTimeNanos = new AtomicLong();
+}
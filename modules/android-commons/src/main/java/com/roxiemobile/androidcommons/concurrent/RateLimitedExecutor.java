@@ -0,0 +1,277 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+
+import com.roxiemobile.androidcommons.concurrent.ParallelWorkerThreadExecutor.Priority;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An executor decorator that caps the throughput of the tasks with a token bucket.
+ * <p>
+ * The bucket holds up to the burst size of permits and is refilled at the given rate, every task
+ * takes its cost in permits before it is handed to the delegate. Neither admission path blocks:
+ * {@link #tryExecute} rejects a task the bucket cannot pay for, {@link #execute} queues it in FIFO
+ * order and a timer hands it over once enough permits have accrued.
+ * <p>
+ * The default delegate runs the tasks in the {@link Priority#Prefetch} lane of the
+ * {@link ParallelWorkerThreadExecutor#defaultExecutor(Priority) default executor}, so maintenance
+ * work cannot starve the foreground work.
+ */
+public final class RateLimitedExecutor implements Executor
+{
+// MARK: - Construction
+
+    public RateLimitedExecutor(double permitsPerSecond, int burstSize) {
+        this(ParallelWorkerThreadExecutor.defaultExecutor(Priority.Prefetch),
+                TimerWheelScheduler.shared(), permitsPerSecond, burstSize);
+    }
+
+    public RateLimitedExecutor(@NonNull Executor delegate, double permitsPerSecond, int burstSize) {
+        this(delegate, TimerWheelScheduler.shared(), permitsPerSecond, burstSize);
+    }
+
+    public RateLimitedExecutor(@NonNull Executor delegate, @NonNull ScheduledExecutorService timer,
+            double permitsPerSecond, int burstSize) {
+        this(delegate, timer, Ticker.SYSTEM, permitsPerSecond, burstSize);
+    }
+
+    /**
+     * Creates an executor which refills the bucket after the time of the given ticker, it must run
+     * at the same pace as the clock of the timer.
+     */
+    public RateLimitedExecutor(@NonNull Executor delegate, @NonNull ScheduledExecutorService timer, @NonNull Ticker ticker,
+            double permitsPerSecond, int burstSize) {
+        if (delegate == null || timer == null || ticker == null) {
+            throw new NullPointerException();
+        }
+        if (!(permitsPerSecond > 0) || Double.isInfinite(permitsPerSecond)) {
+            throw new IllegalArgumentException("Invalid rate: " + permitsPerSecond);
+        }
+        if (burstSize < 1) {
+            throw new IllegalArgumentException("burstSize < 1");
+        }
+
+        mDelegate = delegate;
+        mTimer = timer;
+        mTicker = ticker;
+        mPermitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        mBurstSize = burstSize;
+
+        // Start with a full bucket
+        mPermits = burstSize;
+        mRefillTime = mTicker.nanoTime();
+    }
+
+// MARK: - Properties
+
+    /**
+     * Returns the number of tasks waiting for permits.
+     */
+    public int getQueuedCount() {
+        synchronized (mLock) {
+            return mQueue.size();
+        }
+    }
+
+    /**
+     * Returns the number of tasks handed over to the delegate.
+     */
+    public long getAdmittedCount() {
+        synchronized (mLock) {
+            return mAdmittedCount;
+        }
+    }
+
+    /**
+     * Returns the number of tasks which had to wait for permits.
+     */
+    public long getDelayedCount() {
+        synchronized (mLock) {
+            return mDelayedCount;
+        }
+    }
+
+    /**
+     * Returns the number of tasks refused by {@link #tryExecute} or by the delegate.
+     */
+    public long getRejectedCount() {
+        synchronized (mLock) {
+            return mRejectedCount;
+        }
+    }
+
+// MARK: - Methods
+
+    /**
+     * Executes the task at the cost of one permit.
+     */
+    @Override
+    public void execute(@NonNull Runnable runnable) {
+        execute(runnable, 1);
+    }
+
+    /**
+     * Executes the task at the given cost in permits, right away if the bucket can pay for it and
+     * no other task is waiting, or later otherwise. Never blocks the calling thread.
+     */
+    public void execute(@NonNull Runnable runnable, int cost) {
+        checkTask(runnable, cost);
+
+        synchronized (mLock) {
+            if (!mQueue.isEmpty() || !tryAcquire(cost)) {
+                mQueue.add(new PendingTask(runnable, cost));
+                mDelayedCount++;
+                scheduleDrain();
+                return;
+            }
+        }
+        dispatch(runnable, cost, true);
+    }
+
+    /**
+     * Executes the task at the given cost in permits if the bucket can pay for it right away.
+     *
+     * @return {@code false} if the task is rejected for the lack of permits
+     */
+    public boolean tryExecute(@NonNull Runnable runnable, int cost) {
+        checkTask(runnable, cost);
+
+        synchronized (mLock) {
+            if (!mQueue.isEmpty() || !tryAcquire(cost)) {
+                mRejectedCount++;
+                return false;
+            }
+        }
+        dispatch(runnable, cost, true);
+        return true;
+    }
+
+// MARK: - Private Methods
+
+    private void checkTask(@NonNull Runnable runnable, int cost) {
+        if (runnable == null) {
+            throw new NullPointerException("runnable is null");
+        }
+        if (cost < 1 || cost > mBurstSize) {
+            throw new IllegalArgumentException("Cost " + cost + " is out of 1.." + mBurstSize);
+        }
+    }
+
+    // Must be called under the lock
+    private boolean tryAcquire(int cost) {
+        long now = mTicker.nanoTime();
+        mPermits = Math.min(mBurstSize, mPermits + (now - mRefillTime) * mPermitsPerNano);
+        mRefillTime = now;
+
+        if (mPermits < cost) {
+            return false;
+        }
+
+        mPermits -= cost;
+        mAdmittedCount++;
+        return true;
+    }
+
+    // Must be called under the lock
+    private void scheduleDrain() {
+        PendingTask task = mQueue.peek();
+        if (mDrainScheduled || task == null) {
+            return;
+        }
+
+        long delayNanos = (long) Math.ceil((task.mCost - mPermits) / mPermitsPerNano);
+        mTimer.schedule(this::drain, Math.max(0L, delayNanos), TimeUnit.NANOSECONDS);
+        mDrainScheduled = true;
+    }
+
+    private void drain() {
+        List<PendingTask> tasks = new ArrayList<>();
+        synchronized (mLock) {
+            mDrainScheduled = false;
+
+            PendingTask task;
+            while ((task = mQueue.peek()) != null && tryAcquire(task.mCost)) {
+                mQueue.poll();
+                tasks.add(task);
+            }
+            scheduleDrain();
+        }
+
+        for (PendingTask task : tasks) {
+            dispatch(task.mRunnable, task.mCost, false);
+        }
+    }
+
+    private void dispatch(@NonNull Runnable runnable, int cost, boolean rethrow) {
+        try {
+            mDelegate.execute(runnable);
+        }
+        catch (RejectedExecutionException e) {
+            synchronized (mLock) {
+                // The task has not been admitted after all, give its permits back to the bucket
+                mPermits = Math.min(mBurstSize, mPermits + cost);
+                mAdmittedCount--;
+                mRejectedCount++;
+            }
+            if (rethrow) {
+                throw e;
+            }
+
+            // Nobody is there to catch the rejection, don't leave the caller waiting on the future
+            if (runnable instanceof Future) {
+                ((Future<?>) runnable).cancel(false);
+            }
+        }
+    }
+
+// MARK: - Inner Types
+
+    private static final class PendingTask
+    {
+        PendingTask(@NonNull Runnable runnable, int cost) {
+            mRunnable = runnable;
+            mCost = cost;
+        }
+
+        final Runnable mRunnable;
+
+        final int mCost;
+    }
+
+// MARK: - Variables
+
+    private final Executor mDelegate;
+
+    private final ScheduledExecutorService mTimer;
+
+    private final Ticker mTicker;
+
+    private final double mPermitsPerNano;
+
+    private final int mBurstSize;
+
+    private final Object mLock = new Object();
+
+    private final Queue<PendingTask> mQueue = new ArrayDeque<>();
+
+    private double mPermits;
+
+    private long mRefillTime;
+
+    private boolean mDrainScheduled = false;
+
+    private long mAdmittedCount = 0;
+
+    private long mDelayedCount = 0;
+
+    private long mRejectedCount = 0;
+}
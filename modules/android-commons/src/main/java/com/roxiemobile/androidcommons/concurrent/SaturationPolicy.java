@@ -0,0 +1,202 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides what happens to a task that does not fit into a saturated executor, i.e. when its
+ * queue lane is full and the maximum number of threads is reached.
+ * <p>
+ * Every policy updates the {@link SaturationStats} of the executor. Tasks submitted after the
+ * executor has been shut down are always rejected with an exception.
+ */
+public abstract class SaturationPolicy
+{
+// MARK: - Construction
+
+    private SaturationPolicy() {
+        // Do nothing
+    }
+
+    /**
+     * Rejects the task with a {@link RejectedExecutionException}.
+     */
+    public static @NonNull SaturationPolicy abort() {
+        return ABORT;
+    }
+
+    /**
+     * Runs the task on the submitting thread, which slows the producers down.
+     */
+    public static @NonNull SaturationPolicy callerRuns() {
+        return CALLER_RUNS;
+    }
+
+    /**
+     * Blocks the submitting thread until there is room for the task in its lane or the timeout
+     * elapses, in the latter case the task is rejected with an exception.
+     */
+    public static @NonNull SaturationPolicy blockWithTimeout(long timeout, @NonNull TimeUnit unit) {
+        if (timeout < 0 || unit == null) {
+            throw new IllegalArgumentException("Invalid timeout");
+        }
+        return new BlockWithTimeout(unit.toNanos(timeout));
+    }
+
+    /**
+     * Drops the oldest queued task of the same priority lane and queues the new one. Dropped
+     * futures are cancelled.
+     * <p>
+     * Requires the priority lanes, an executor built with the {@link ParallelWorkerThreadExecutor.QueueMode#LockFree}
+     * queue refuses this policy.
+     */
+    public static @NonNull SaturationPolicy dropOldestOfSameLane() {
+        return DROP_OLDEST_OF_SAME_LANE;
+    }
+
+    /**
+     * Hands the task over to the given overflow executor.
+     */
+    public static @NonNull SaturationPolicy spillTo(@NonNull Executor overflowExecutor) {
+        if (overflowExecutor == null) {
+            throw new NullPointerException("overflowExecutor is null");
+        }
+        return new SpillTo(overflowExecutor);
+    }
+
+// MARK: - Methods
+
+    final void saturated(@NonNull Runnable task, @NonNull ThreadPoolExecutor executor, @NonNull SaturationStats stats) {
+        stats.mSaturatedCount.incrementAndGet();
+
+        if (executor.isShutdown()) {
+            stats.mAbortedCount.incrementAndGet();
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+        handle(task, executor, stats);
+    }
+
+    abstract void handle(@NonNull Runnable task, @NonNull ThreadPoolExecutor executor, @NonNull SaturationStats stats);
+
+    /**
+     * Returns {@code true} if the policy works only on top of the priority lanes of a {@link LaneQueue}.
+     */
+    boolean requiresLanes() {
+        return false;
+    }
+
+    static @NonNull RejectedExecutionException newRejectedException(@NonNull Runnable task) {
+        return new RejectedExecutionException("Task " + task + " rejected from saturated executor");
+    }
+
+// MARK: - Inner Types
+
+    private static final class Abort extends SaturationPolicy
+    {
+        @Override
+        void handle(@NonNull Runnable task, @NonNull ThreadPoolExecutor executor, @NonNull SaturationStats stats) {
+            stats.mAbortedCount.incrementAndGet();
+            throw newRejectedException(task);
+        }
+    }
+
+    private static final class CallerRuns extends SaturationPolicy
+    {
+        @Override
+        void handle(@NonNull Runnable task, @NonNull ThreadPoolExecutor executor, @NonNull SaturationStats stats) {
+            stats.mCallerRunsCount.incrementAndGet();
+            task.run();
+        }
+    }
+
+    private static final class BlockWithTimeout extends SaturationPolicy
+    {
+        BlockWithTimeout(long timeoutNanos) {
+            mTimeoutNanos = timeoutNanos;
+        }
+
+        @Override
+        void handle(@NonNull Runnable task, @NonNull ThreadPoolExecutor executor, @NonNull SaturationStats stats) {
+            boolean queued = false;
+            try {
+                queued = executor.getQueue().offer(task, mTimeoutNanos, TimeUnit.NANOSECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (!queued) {
+                stats.mBlockTimeoutCount.incrementAndGet();
+                throw newRejectedException(task);
+            }
+
+            // The executor could have been shut down while waiting
+            if (executor.isShutdown() && executor.remove(task)) {
+                stats.mAbortedCount.incrementAndGet();
+                throw new RejectedExecutionException("Executor has been shut down");
+            }
+            stats.mBlockedCount.incrementAndGet();
+        }
+
+        private final long mTimeoutNanos;
+    }
+
+    private static final class DropOldestOfSameLane extends SaturationPolicy
+    {
+        @Override
+        boolean requiresLanes() {
+            return true;
+        }
+
+        @Override
+        void handle(@NonNull Runnable task, @NonNull ThreadPoolExecutor executor, @NonNull SaturationStats stats) {
+            BlockingQueue<Runnable> queue = executor.getQueue();
+            Runnable dropped = (queue instanceof LaneQueue)
+                    ? ((LaneQueue) queue).pollOldest(PrioritizedTask.laneOf(task))
+                    : null;
+
+            if (dropped == null) {
+                stats.mAbortedCount.incrementAndGet();
+                throw newRejectedException(task);
+            }
+            stats.mDroppedCount.incrementAndGet();
+
+            // Don't leave the callers waiting on a future that will never be completed
+            Runnable runnable = (dropped instanceof PrioritizedTask) ? ((PrioritizedTask) dropped).getRunnable() : dropped;
+            if (runnable instanceof Future) {
+                ((Future<?>) runnable).cancel(false);
+            }
+
+            executor.execute(task);
+        }
+    }
+
+    private static final class SpillTo extends SaturationPolicy
+    {
+        SpillTo(@NonNull Executor overflowExecutor) {
+            mOverflowExecutor = overflowExecutor;
+        }
+
+        @Override
+        void handle(@NonNull Runnable task, @NonNull ThreadPoolExecutor executor, @NonNull SaturationStats stats) {
+            mOverflowExecutor.execute(task);
+            stats.mSpilledCount.incrementAndGet();
+        }
+
+        private final Executor mOverflowExecutor;
+    }
+
+// MARK: - Constants
+
+    private static final SaturationPolicy ABORT = new Abort();
+
+    private static final SaturationPolicy CALLER_RUNS = new CallerRuns();
+
+    private static final SaturationPolicy DROP_OLDEST_OF_SAME_LANE = new DropOldestOfSameLane();
+}
@@ -0,0 +1,97 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the saturation events of an executor, updated by its {@link SaturationPolicy}.
+ * <p>
+ * The counters are live and can be read at any time from any thread.
+ */
+public final class SaturationStats
+{
+// MARK: - Construction
+
+    SaturationStats() {
+        // Do nothing
+    }
+
+// MARK: - Properties
+
+    /**
+     * Returns the number of tasks that did not fit into the executor.
+     */
+    public long getSaturatedCount() {
+        return mSaturatedCount.get();
+    }
+
+    /**
+     * Returns the number of tasks that were rejected with an exception.
+     */
+    public long getAbortedCount() {
+        return mAbortedCount.get();
+    }
+
+    /**
+     * Returns the number of tasks that were run on the submitting thread.
+     */
+    public long getCallerRunsCount() {
+        return mCallerRunsCount.get();
+    }
+
+    /**
+     * Returns the number of tasks that were queued after the submitting thread had been blocked.
+     */
+    public long getBlockedCount() {
+        return mBlockedCount.get();
+    }
+
+    /**
+     * Returns the number of tasks that were rejected because the block timeout had elapsed.
+     */
+    public long getBlockTimeoutCount() {
+        return mBlockTimeoutCount.get();
+    }
+
+    /**
+     * Returns the number of queued tasks that were dropped to make room for newer ones.
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    /**
+     * Returns the number of tasks that were handed over to the overflow executor.
+     */
+    public long getSpilledCount() {
+        return mSpilledCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "SaturationStats{" +
+                "saturated=" + getSaturatedCount() +
+                ", aborted=" + getAbortedCount() +
+                ", callerRuns=" + getCallerRunsCount() +
+                ", blocked=" + getBlockedCount() +
+                ", blockTimeouts=" + getBlockTimeoutCount() +
+                ", dropped=" + getDroppedCount() +
+                ", spilled=" + getSpilledCount() +
+                '}';
+    }
+
+// MARK: - Variables
+
+    final AtomicLong mSaturatedCount = new AtomicLong();
+
+    final AtomicLong mAbortedCount = new AtomicLong();
+
+    final AtomicLong mCallerRunsCount = new AtomicLong();
+
+    final AtomicLong mBlockedCount = new AtomicLong();
+
+    final AtomicLong mBlockTimeoutCount = new AtomicLong();
+
+    final AtomicLong mDroppedCount = new AtomicLong();
+
+    final AtomicLong mSpilledCount = new AtomicLong();
+}
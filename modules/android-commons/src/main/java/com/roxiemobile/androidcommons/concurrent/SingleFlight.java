@@ -0,0 +1,137 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces the concurrent requests for the same key into one in-flight execution.
+ * <p>
+ * The first caller for a key submits the computation to the executor, the callers arriving while
+ * it runs receive its result or failure. The entry is removed before the result is delivered,
+ * so a request made after that starts a new execution.
+ *
+ * @param <K> The type of the keys
+ * @param <V> The type of the results
+ */
+public final class SingleFlight<K, V>
+{
+// MARK: - Construction
+
+    /**
+     * Creates a single-flight group over {@link ParallelWorkerThreadExecutor#defaultExecutor()}.
+     */
+    public SingleFlight() {
+        this(ParallelWorkerThreadExecutor.defaultExecutor());
+    }
+
+    public SingleFlight(@NonNull Executor executor) {
+        if (executor == null) {
+            throw new NullPointerException("executor is null");
+        }
+        mExecutor = executor;
+    }
+
+// MARK: - Properties
+
+    /**
+     * Returns the number of keys which have an execution in flight.
+     */
+    public int getInFlightCount() {
+        return mCalls.size();
+    }
+
+    /**
+     * Returns the number of executions started.
+     */
+    public long getExecutedCount() {
+        return mExecutedCount.get();
+    }
+
+    /**
+     * Returns the number of requests which have joined an execution in flight.
+     */
+    public long getSharedCount() {
+        return mSharedCount.get();
+    }
+
+// MARK: - Methods
+
+    /**
+     * Returns a promise of the result of the callable, shared with the concurrent requests for the
+     * same key. Cancelling the returned promise does not affect the other callers.
+     */
+    public @NonNull Promise<V> execute(@NonNull K key, @NonNull final Callable<? extends V> callable) {
+        if (key == null || callable == null) {
+            throw new NullPointerException();
+        }
+
+        Promise<V> call = mCalls.get(key);
+        if (call == null) {
+            final Promise<V> promise = new Promise<>();
+            call = mCalls.putIfAbsent(key, promise);
+
+            if (call == null) {
+                call = promise;
+                mExecutedCount.incrementAndGet();
+                start(key, promise, callable);
+            }
+            else {
+                mSharedCount.incrementAndGet();
+            }
+        }
+        else {
+            mSharedCount.incrementAndGet();
+        }
+
+        // Give every caller its own promise, so one caller cannot cancel the others
+        return call.thenApply(value -> value, DIRECT);
+    }
+
+// MARK: - Private Methods
+
+    private void start(@NonNull final K key, @NonNull final Promise<V> promise, @NonNull final Callable<? extends V> callable) {
+        try {
+            mExecutor.execute(() -> {
+                V value = null;
+                Throwable cause = null;
+                try {
+                    value = callable.call();
+                }
+                catch (Throwable e) {
+                    cause = e;
+                }
+
+                mCalls.remove(key, promise);
+                if (cause != null) {
+                    promise.completeExceptionally(cause);
+                }
+                else {
+                    promise.complete(value);
+                }
+            });
+        }
+        catch (RuntimeException e) {
+            mCalls.remove(key, promise);
+            promise.completeExceptionally(e);
+        }
+    }
+
+// MARK: - Constants
+
+    private static final Executor DIRECT = Runnable::run;
+
+// MARK: - Variables
+
+    private final Executor mExecutor;
+
+    private final ConcurrentMap<K, Promise<V>> mCalls = new ConcurrentHashMap<>();
+
+    private final AtomicLong mExecutedCount = new AtomicLong();
+
+    private final AtomicLong mSharedCount = new AtomicLong();
+}
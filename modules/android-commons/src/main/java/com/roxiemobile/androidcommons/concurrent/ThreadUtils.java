@@ -10,10 +10,15 @@ package com.roxiemobile.androidcommons.concurrent;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Process;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Helper methods to deal with threading related tasks.
@@ -36,44 +41,112 @@ public final class ThreadUtils
 
     public static void setUiThread(Looper looper) {
         synchronized (sLock) {
-            if (sUiThreadHandler != null && sUiThreadHandler.getLooper() != looper) {
+            Handler handler = sUiThreadHandler;
+            if (handler != null && handler.getLooper() != looper) {
                 throw new RuntimeException("UI thread looper is already set to " +
-                        sUiThreadHandler.getLooper() + " (Main thread looper is " +
+                        handler.getLooper() + " (Main thread looper is " +
                         Looper.getMainLooper() + "), cannot set to new looper " + looper);
             }
             else {
                 sUiThreadHandler = new Handler(looper);
+                if (sUiThreadScheduler == null) {
+                    sUiThread = new LooperUiThread(sUiThreadHandler);
+                }
             }
         }
     }
 
-    private static Handler getUiThreadHandler() {
+    /**
+     * Replaces the UI thread with the given scheduler, the tasks posted to the UI thread then run
+     * in virtual time while the test drives the scheduler. Unlike {@link #setUiThread} the scheduler
+     * can be replaced or cleared between tests. The Looper of the UI thread stays the same.
+     */
+    @VisibleForTesting
+    public static void setUiThreadScheduler(@Nullable VirtualTimeScheduler scheduler) {
         synchronized (sLock) {
-            if (sUiThreadHandler == null) {
-                if (sWillOverride) {
-                    throw new RuntimeException("Did not yet override the UI thread");
-                }
-                sUiThreadHandler = new Handler(Looper.getMainLooper());
+            sUiThreadScheduler = scheduler;
+            if (scheduler != null) {
+                sUiThread = new ScheduledUiThread(scheduler);
+            }
+            else {
+                sUiThread = (sUiThreadHandler != null) ? new LooperUiThread(sUiThreadHandler) : null;
             }
-            return sUiThreadHandler;
         }
     }
 
+    /**
+     * Marks the calling thread as awaited by the UI thread, which does not return to its Looper
+     * until the calling thread is done, such as a worker task of a {@code StartupGraph} run from
+     * {@code Application.onCreate()}. While the mark is set, a blocking hand-off from the calling
+     * thread to the UI thread would never be served, so it fails with an
+     * {@link IllegalStateException} instead of waiting forever. Other threads are not affected.
+     *
+     * @param awaiter The name of the awaiting call reported by the failure, or null to clear the mark
+     * @return The previous mark of the calling thread, to be restored by a nested call
+     */
+    public static @Nullable String setAwaitedByUiThread(@Nullable String awaiter) {
+        String previous = sAwaitedByUiThread.get();
+        if (awaiter != null) {
+            sAwaitedByUiThread.set(awaiter);
+        }
+        else {
+            sAwaitedByUiThread.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * @throws IllegalStateException if the UI thread awaits the calling thread
+     */
+    private static void checkNotAwaitedByUiThread() {
+        String awaiter = sAwaitedByUiThread.get();
+        if (awaiter != null) {
+            throw new IllegalStateException("UI thread is awaiting this thread in " + awaiter + ", waiting for it would never return");
+        }
+    }
+
+    private static UiThread getUiThread() {
+        // Once published the UI thread is read without taking the lock
+        UiThread uiThread = sUiThread;
+        if (uiThread != null) {
+            return uiThread;
+        }
+
+        synchronized (sLock) {
+            if (sUiThread == null) {
+                sUiThread = new LooperUiThread(getUiThreadHandlerLocked());
+            }
+            return sUiThread;
+        }
+    }
+
+    // Must be called under the lock
+    private static Handler getUiThreadHandlerLocked() {
+        if (sUiThreadHandler == null) {
+            if (sWillOverride) {
+                throw new RuntimeException("Did not yet override the UI thread");
+            }
+            sUiThreadHandler = new Handler(Looper.getMainLooper());
+        }
+        return sUiThreadHandler;
+    }
+
     /**
      * Run the supplied Runnable on the main thread. The method will block until the Runnable
-     * completes.
+     * completes. The wait is timed by the {@link MainThreadWatchdog} if it is enabled. The hand-off
+     * reuses a carrier owned by the calling thread and allocates nothing.
      *
      * @param r The Runnable to run.
+     * @throws IllegalStateException if the UI thread awaits the calling thread, see {@link #setAwaitedByUiThread}
      */
     public static void runOnUiThreadBlocking(final Runnable r) {
         if (runningOnUiThread()) {
             r.run();
         }
         else {
-            FutureTask<Void> task = new FutureTask<>(r, null);
-            postOnUiThread(task);
+            checkNotAwaitedByUiThread();
             try {
-                task.get();
+                dispatchBlocking(UI_THREAD_POSTER, r, null);
             }
             catch (Exception e) {
                 throw new RuntimeException("Exception occured while waiting for runnable", e);
@@ -99,17 +172,27 @@ public final class ThreadUtils
 
     /**
      * Run the supplied Callable on the main thread, The method will block until the Callable
-     * completes.
+     * completes. The wait is timed by the {@link MainThreadWatchdog} if it is enabled. The hand-off
+     * reuses a carrier owned by the calling thread and allocates nothing.
      *
      * @param c The Callable to run
      * @return The result of the callable
      * @throws ExecutionException c's exception
+     * @throws IllegalStateException if the UI thread awaits the calling thread, see {@link #setAwaitedByUiThread}
      */
     public static <T> T runOnUiThreadBlocking(Callable<T> c) throws ExecutionException {
-        FutureTask<T> task = new FutureTask<>(c);
-        runOnUiThread(task);
+        if (runningOnUiThread()) {
+            try {
+                return c.call();
+            }
+            catch (Throwable e) {
+                throw new ExecutionException(e);
+            }
+        }
+
+        checkNotAwaitedByUiThread();
         try {
-            return task.get();
+            return dispatchBlocking(UI_THREAD_POSTER, null, c);
         }
         catch (InterruptedException e) {
             throw new RuntimeException("Interrupted waiting for callable", e);
@@ -135,7 +218,8 @@ public final class ThreadUtils
 
     /**
      * Run the supplied Callable on the main thread. The method will block only if the current
-     * thread is the main thread.
+     * thread is the main thread. The returned task belongs to the caller, so unlike the blocking
+     * variants this method allocates it for every call.
      *
      * @param c The Callable to run
      * @return A FutureTask wrapping the callable to retrieve results
@@ -155,7 +239,7 @@ public final class ThreadUtils
             r.run();
         }
         else {
-            getUiThreadHandler().post(r);
+            postOnUiThread(r);
         }
     }
 
@@ -167,7 +251,7 @@ public final class ThreadUtils
      * @return The queried task (to aid inline construction)
      */
     public static <T> FutureTask<T> postOnUiThread(FutureTask<T> task) {
-        getUiThreadHandler().post(task);
+        postOnUiThread((Runnable) task);
         return task;
     }
 
@@ -178,7 +262,7 @@ public final class ThreadUtils
      * @param task The Runnable to run
      */
     public static void postOnUiThread(Runnable task) {
-        getUiThreadHandler().post(task);
+        getUiThread().post(task);
     }
 
     /**
@@ -189,18 +273,21 @@ public final class ThreadUtils
      * @param delayMillis The delay in milliseconds until the Runnable will be run
      */
     public static void postOnUiThreadDelayed(Runnable task, long delayMillis) {
-        getUiThreadHandler().postDelayed(task, delayMillis);
+        getUiThread().postDelayed(task, delayMillis);
     }
 
     /**
      * @return true if the current thread is the main (UI) thread.
      */
     public static boolean runningOnUiThread() {
-        return getUiThreadHandler().getLooper() == Looper.myLooper();
+        return getUiThread().isCurrentThread();
     }
 
+    /**
+     * @return The Looper of the UI thread.
+     */
     public static Looper getUiThreadLooper() {
-        return getUiThreadHandler().getLooper();
+        return getUiThread().getLooper();
     }
 
     /**
@@ -210,11 +297,141 @@ public final class ThreadUtils
         Process.setThreadPriority(tid, Process.THREAD_PRIORITY_AUDIO);
     }
 
+    /**
+     * Hands the task over to the thread behind the poster on the carrier of the calling thread and
+     * waits for it, exactly one of the tasks is non-null.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T dispatchBlocking(Executor poster, Runnable r, Callable<T> c) throws InterruptedException, ExecutionException {
+        DispatchCarrier carrier = DispatchCarrier.obtain(r, c);
+        try {
+            poster.execute(carrier);
+            return (T) awaitOnUiThread(carrier);
+        }
+        finally {
+            carrier.release();
+        }
+    }
+
+// MARK: - Private Methods
+
+    private static <T> T awaitOnUiThread(Future<T> task) throws InterruptedException, ExecutionException {
+        MainThreadWatchdog watchdog = MainThreadWatchdog.shared();
+        return watchdog.isEnabled()
+                ? watchdog.await(task, getUiThread().getThread())
+                : task.get();
+    }
+
+// MARK: - Inner Types
+
+    /**
+     * The thread the UI tasks are posted to, resolved once and then read without the lock.
+     */
+    private static abstract class UiThread
+    {
+        abstract void post(Runnable task);
+
+        abstract void postDelayed(Runnable task, long delayMillis);
+
+        abstract boolean isCurrentThread();
+
+        abstract @Nullable Thread getThread();
+
+        abstract Looper getLooper();
+    }
+
+    private static final class LooperUiThread extends UiThread
+    {
+        LooperUiThread(Handler handler) {
+            mHandler = handler;
+            mLooper = handler.getLooper();
+        }
+
+        @Override
+        void post(Runnable task) {
+            mHandler.post(task);
+        }
+
+        @Override
+        void postDelayed(Runnable task, long delayMillis) {
+            mHandler.postDelayed(task, delayMillis);
+        }
+
+        @Override
+        boolean isCurrentThread() {
+            return mLooper == Looper.myLooper();
+        }
+
+        @Override
+        @Nullable Thread getThread() {
+            return (mLooper != null) ? mLooper.getThread() : null;
+        }
+
+        @Override
+        Looper getLooper() {
+            return mLooper;
+        }
+
+        private final Handler mHandler;
+        private final Looper mLooper;
+    }
+
+    private static final class ScheduledUiThread extends UiThread
+    {
+        ScheduledUiThread(VirtualTimeScheduler scheduler) {
+            mScheduler = scheduler;
+        }
+
+        @Override
+        void post(Runnable task) {
+            mScheduler.execute(task);
+        }
+
+        @Override
+        void postDelayed(Runnable task, long delayMillis) {
+            mScheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        boolean isCurrentThread() {
+            return mScheduler.isOwnerThread();
+        }
+
+        @Override
+        @Nullable Thread getThread() {
+            return mScheduler.getOwnerThread();
+        }
+
+        @Override
+        Looper getLooper() {
+            // The tasks no longer run on the Looper but it is still the one of the UI thread
+            synchronized (sLock) {
+                return getUiThreadHandlerLocked().getLooper();
+            }
+        }
+
+        private final VirtualTimeScheduler mScheduler;
+    }
+
+// MARK: - Constants
+
+    // Posts with a Message recycled from the Looper's pool, so the post itself allocates nothing
+    private static final Executor UI_THREAD_POSTER = ThreadUtils::postOnUiThread;
+
 // MARK: - Variables
 
     private static final Object sLock = new Object();
 
     private static boolean sWillOverride = false;
 
+    // Guarded by sLock
     private static Handler sUiThreadHandler;
+
+    // Guarded by sLock
+    private static VirtualTimeScheduler sUiThreadScheduler;
+
+    // Written under sLock, read without it
+    private static volatile UiThread sUiThread;
+
+    private static final ThreadLocal<String> sAwaitedByUiThread = new ThreadLocal<>();
 }
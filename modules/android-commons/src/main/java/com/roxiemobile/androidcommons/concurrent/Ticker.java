@@ -0,0 +1,21 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+/**
+ * A source of monotonic time in nanoseconds for the executors which measure intervals.
+ * <p>
+ * The executors read {@link #SYSTEM} unless another ticker is passed to their constructors, the
+ * tests pass a {@link VirtualTimeScheduler} to run them in virtual time.
+ */
+public interface Ticker
+{
+// MARK: - Methods
+
+    /**
+     * Returns the current time in nanoseconds, only the difference of two readings is meaningful.
+     */
+    long nanoTime();
+
+// MARK: - Constants
+
+    Ticker SYSTEM = System::nanoTime;
+}
@@ -0,0 +1,569 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A scheduled executor service built on a hashed timer wheel, the expired tasks are run on the
+ * delegate executor.
+ * <p>
+ * Scheduling and cancelling are O(1): new and cancelled timeouts are handed over to the timer
+ * thread through lock-free queues, the timer thread hashes them into the wheel buckets and
+ * unlinks them. Timeouts fire with a precision of one tick, which makes the wheel suitable for a
+ * large number of coarse timeouts such as request deadlines and retries. The timer thread parks
+ * while there is nothing scheduled.
+ * <p>
+ * Shutting down the scheduler cancels the pending timeouts, the delegate executor is not shut down.
+ */
+public final class TimerWheelScheduler extends AbstractExecutorService implements ScheduledExecutorService
+{
+// MARK: - Construction
+
+    /**
+     * Returns the scheduler that runs the expired tasks on {@link ParallelWorkerThreadExecutor#shared()}.
+     */
+    public static TimerWheelScheduler shared() {
+        return SingletonHolder.SHARED_INSTANCE;
+    }
+
+    private static class SingletonHolder {
+        private static final TimerWheelScheduler SHARED_INSTANCE = new TimerWheelScheduler(
+                ParallelWorkerThreadExecutor.shared(), DEFAULT_TICK_MILLIS, TimeUnit.MILLISECONDS, DEFAULT_WHEEL_SIZE, true);
+    }
+
+    /**
+     * @param delegate The executor to run the expired tasks on
+     * @param tickDuration The duration of one wheel tick, i.e. the timer precision
+     * @param wheelSize The number of buckets, rounded up to a power of two
+     */
+    public TimerWheelScheduler(@NonNull Executor delegate, long tickDuration, @NonNull TimeUnit unit, int wheelSize) {
+        this(delegate, tickDuration, unit, wheelSize, false);
+    }
+
+    private TimerWheelScheduler(@NonNull Executor delegate, long tickDuration, @NonNull TimeUnit unit, int wheelSize, boolean shared) {
+        if (delegate == null || unit == null) {
+            throw new NullPointerException();
+        }
+        if (tickDuration <= 0 || wheelSize < 1 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid tick duration or wheel size");
+        }
+
+        mDelegate = delegate;
+        mShared = shared;
+        mTickNanos = unit.toNanos(tickDuration);
+
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        mWheel = new Bucket[size];
+        for (int idx = 0; idx < size; ++idx) {
+            mWheel[idx] = new Bucket();
+        }
+        mMask = size - 1;
+    }
+
+// MARK: - Properties
+
+    /**
+     * Returns the number of scheduled timeouts that have neither fired nor been cancelled.
+     */
+    public int getPendingCount() {
+        return Math.max(0, mPendingCount.get());
+    }
+
+// MARK: - Methods
+
+    @Override
+    public void execute(@NonNull Runnable runnable) {
+        if (runnable == null) {
+            throw new NullPointerException("runnable is null");
+        }
+        if (mShutdown) {
+            throw new RejectedExecutionException("Scheduler has been shut down");
+        }
+        mDelegate.execute(runnable);
+    }
+
+    @Override
+    public @NonNull ScheduledFuture<?> schedule(@NonNull Runnable command, long delay, @NonNull TimeUnit unit) {
+        if (command == null || unit == null) {
+            throw new NullPointerException();
+        }
+        return enqueue(new Timeout<Void>(command, null, triggerTime(delay, unit), 0L));
+    }
+
+    @Override
+    public @NonNull <V> ScheduledFuture<V> schedule(@NonNull Callable<V> callable, long delay, @NonNull TimeUnit unit) {
+        if (callable == null || unit == null) {
+            throw new NullPointerException();
+        }
+        return enqueue(new Timeout<>(callable, triggerTime(delay, unit)));
+    }
+
+    @Override
+    public @NonNull ScheduledFuture<?> scheduleAtFixedRate(@NonNull Runnable command, long initialDelay, long period, @NonNull TimeUnit unit) {
+        if (command == null || unit == null) {
+            throw new NullPointerException();
+        }
+        if (period <= 0) {
+            throw new IllegalArgumentException("period <= 0");
+        }
+        return enqueue(new Timeout<Void>(command, null, triggerTime(initialDelay, unit), toDelayNanos(period, unit)));
+    }
+
+    @Override
+    public @NonNull ScheduledFuture<?> scheduleWithFixedDelay(@NonNull Runnable command, long initialDelay, long delay, @NonNull TimeUnit unit) {
+        if (command == null || unit == null) {
+            throw new NullPointerException();
+        }
+        if (delay <= 0) {
+            throw new IllegalArgumentException("delay <= 0");
+        }
+        return enqueue(new Timeout<Void>(command, null, triggerTime(initialDelay, unit), -toDelayNanos(delay, unit)));
+    }
+
+    /**
+     * @throws UnsupportedOperationException if called on the shared instance
+     */
+    @Override
+    public void shutdown() {
+        checkNotShared();
+        synchronized (mLock) {
+            if (mShutdown) {
+                return;
+            }
+            mShutdown = true;
+
+            if (mTimerThread == null) {
+                mTerminated = true;
+                mLock.notifyAll();
+                return;
+            }
+        }
+        LockSupport.unpark(mTimerThread);
+    }
+
+    /**
+     * Shuts down the scheduler and returns the timeouts that have not fired yet, they are
+     * cancelled at this point.
+     *
+     * @throws UnsupportedOperationException if called on the shared instance
+     */
+    @Override
+    public @NonNull List<Runnable> shutdownNow() {
+        checkNotShared();
+        shutdown();
+        try {
+            awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (mLock) {
+            List<Runnable> unfired = mUnfired;
+            mUnfired = new ArrayList<>();
+            return unfired;
+        }
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return mShutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        synchronized (mLock) {
+            return mTerminated;
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (mLock) {
+            while (!mTerminated) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(mLock, remaining);
+            }
+            return true;
+        }
+    }
+
+// MARK: - Private Methods
+
+    private void checkNotShared() {
+        if (mShared) {
+            throw new UnsupportedOperationException("Shared scheduler cannot be shut down");
+        }
+    }
+
+    private static long triggerTime(long delay, @NonNull TimeUnit unit) {
+        return System.nanoTime() + toDelayNanos(delay, unit);
+    }
+
+    private static long toDelayNanos(long delay, @NonNull TimeUnit unit) {
+        // Keep the trigger times comparable by subtraction, a larger delay would wrap around and fire at once
+        return Math.min(unit.toNanos(Math.max(0L, delay)), MAX_DELAY_NANOS);
+    }
+
+    private @NonNull <V> Timeout<V> enqueue(@NonNull Timeout<V> timeout) {
+        if (mShutdown) {
+            throw new RejectedExecutionException("Scheduler has been shut down");
+        }
+
+        mPendingCount.incrementAndGet();
+        mNewTimeouts.offer(timeout);
+        wakeUpTimer();
+        return timeout;
+    }
+
+    private void wakeUpTimer() {
+        Thread timerThread = mTimerThread;
+        if (timerThread == null) {
+            synchronized (mLock) {
+                if (mTimerThread == null && !mShutdown) {
+                    mStartTime = System.nanoTime();
+                    mTimerThread = new Thread(this::runTimer, TimerWheelScheduler.class.getSimpleName());
+                    mTimerThread.setDaemon(true);
+                    mTimerThread.start();
+                }
+                timerThread = mTimerThread;
+            }
+        }
+
+        if (timerThread != null && mIdle) {
+            LockSupport.unpark(timerThread);
+        }
+    }
+
+    private void runTimer() {
+        long tick = 0L;
+        try {
+            while (!mShutdown) {
+                if (mPendingCount.get() <= 0 && mNewTimeouts.isEmpty()) {
+                    // Nothing is scheduled, sleep until the next enqueue() and realign the wheel
+                    mIdle = true;
+                    if (mPendingCount.get() <= 0 && mNewTimeouts.isEmpty() && !mShutdown) {
+                        LockSupport.park(this);
+                    }
+                    mIdle = false;
+                    tick = Math.max(tick, (System.nanoTime() - mStartTime) / mTickNanos);
+                    continue;
+                }
+
+                long deadline = mStartTime + (tick + 1) * mTickNanos;
+                long sleepNanos = deadline - System.nanoTime();
+                if (sleepNanos > 0) {
+                    LockSupport.parkNanos(this, sleepNanos);
+                    if (System.nanoTime() - deadline < 0) {
+                        // Woken up early by enqueue() or a spurious wake up
+                        continue;
+                    }
+                }
+
+                removeCancelledTimeouts();
+                transferNewTimeouts(tick);
+                expireTimeouts(mWheel[(int) (tick & mMask)], deadline);
+                tick++;
+            }
+        }
+        finally {
+            collectUnfiredTimeouts();
+        }
+    }
+
+    private void transferNewTimeouts(long currentTick) {
+        // Bounded so a producer flood cannot stall the wheel
+        for (int idx = 0; idx < MAX_TRANSFERS_PER_TICK; ++idx) {
+            Timeout<?> timeout = mNewTimeouts.poll();
+            if (timeout == null) {
+                break;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            addToWheel(timeout, currentTick);
+        }
+    }
+
+    private void addToWheel(@NonNull Timeout<?> timeout, long currentTick) {
+        long calculated = Math.max(0L, timeout.mTriggerTime - mStartTime) / mTickNanos;
+        timeout.mRemainingRounds = Math.max(0L, (calculated - currentTick) / mWheel.length);
+
+        long ticks = Math.max(calculated, currentTick);
+        mWheel[(int) (ticks & mMask)].add(timeout);
+    }
+
+    private void removeCancelledTimeouts() {
+        Timeout<?> timeout;
+        while ((timeout = mCancelledTimeouts.poll()) != null) {
+            if (timeout.mBucket != null) {
+                timeout.mBucket.remove(timeout);
+            }
+        }
+    }
+
+    private void expireTimeouts(@NonNull Bucket bucket, long deadline) {
+        Timeout<?> timeout = bucket.mHead;
+        while (timeout != null) {
+            Timeout<?> next = timeout.mNext;
+            if (timeout.mRemainingRounds <= 0 && timeout.mTriggerTime - deadline <= 0) {
+                bucket.remove(timeout);
+                fire(timeout);
+            }
+            else if (timeout.mRemainingRounds > 0) {
+                timeout.mRemainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    private void fire(@NonNull Timeout<?> timeout) {
+        // Lost the race against cancel()
+        if (!timeout.mQueued.compareAndSet(true, false)) {
+            return;
+        }
+
+        mPendingCount.decrementAndGet();
+        try {
+            mDelegate.execute(timeout);
+        }
+        catch (RejectedExecutionException e) {
+            timeout.reject(e);
+        }
+    }
+
+    private void reschedule(@NonNull Timeout<?> timeout) {
+        if (mShutdown) {
+            timeout.cancel(false);
+            return;
+        }
+
+        mPendingCount.incrementAndGet();
+        timeout.mQueued.set(true);
+
+        // A cancel() which has run since the task was fired has not seen the timeout queued, so it
+        // is undone here; the compare-and-set lets exactly one side take the timeout back
+        if (timeout.isCancelled()) {
+            if (timeout.mQueued.compareAndSet(true, false)) {
+                mPendingCount.decrementAndGet();
+            }
+            return;
+        }
+
+        mNewTimeouts.offer(timeout);
+        wakeUpTimer();
+    }
+
+    private void collectUnfiredTimeouts() {
+        List<Runnable> unfired = new ArrayList<>();
+        for (Bucket bucket : mWheel) {
+            Timeout<?> timeout;
+            while ((timeout = bucket.mHead) != null) {
+                bucket.remove(timeout);
+                if (!timeout.isCancelled()) {
+                    unfired.add(timeout);
+                }
+            }
+        }
+
+        Timeout<?> timeout;
+        while ((timeout = mNewTimeouts.poll()) != null) {
+            if (!timeout.isCancelled()) {
+                unfired.add(timeout);
+            }
+        }
+        mCancelledTimeouts.clear();
+
+        for (Runnable runnable : unfired) {
+            ((Timeout<?>) runnable).cancel(false);
+        }
+        mPendingCount.set(0);
+
+        synchronized (mLock) {
+            mUnfired = unfired;
+            mTerminated = true;
+            mLock.notifyAll();
+        }
+    }
+
+// MARK: - Inner Types
+
+    private final class Timeout<V> extends FutureTask<V> implements ScheduledFuture<V>
+    {
+        Timeout(@NonNull Runnable runnable, @Nullable V result, long triggerTime, long period) {
+            super(runnable, result);
+            mTriggerTime = triggerTime;
+            mPeriod = period;
+        }
+
+        Timeout(@NonNull Callable<V> callable, long triggerTime) {
+            super(callable);
+            mTriggerTime = triggerTime;
+            mPeriod = 0L;
+        }
+
+        @Override
+        public long getDelay(@NonNull TimeUnit unit) {
+            return unit.convert(mTriggerTime - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(@NonNull Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+
+            long diff = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+            return (diff < 0) ? -1 : (diff > 0) ? 1 : 0;
+        }
+
+        @Override
+        public void run() {
+            if (mPeriod == 0L) {
+                super.run();
+            }
+            else if (runAndReset()) {
+                mTriggerTime = (mPeriod > 0) ? mTriggerTime + mPeriod : System.nanoTime() - mPeriod;
+                reschedule(this);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled && mQueued.compareAndSet(true, false)) {
+                mPendingCount.decrementAndGet();
+                if (!mShutdown) {
+                    mCancelledTimeouts.offer(this);
+                }
+            }
+            return cancelled;
+        }
+
+        void reject(@NonNull Throwable cause) {
+            setException(cause);
+        }
+
+        private volatile long mTriggerTime;
+        private final long mPeriod;
+
+        // Set while the timeout waits in the wheel, cleared by whoever fires or cancels it first
+        private final AtomicBoolean mQueued = new AtomicBoolean(true);
+
+        // Accessed by the timer thread only
+        private long mRemainingRounds;
+        private Bucket mBucket;
+        private Timeout<?> mPrev;
+        private Timeout<?> mNext;
+    }
+
+    /**
+     * A doubly linked list of timeouts, accessed by the timer thread only.
+     */
+    private static final class Bucket
+    {
+        void add(@NonNull Timeout<?> timeout) {
+            timeout.mBucket = this;
+            timeout.mPrev = mTail;
+            timeout.mNext = null;
+            if (mTail == null) {
+                mHead = timeout;
+            }
+            else {
+                mTail.mNext = timeout;
+            }
+            mTail = timeout;
+        }
+
+        void remove(@NonNull Timeout<?> timeout) {
+            if (timeout.mBucket != this) {
+                return;
+            }
+
+            if (timeout.mPrev != null) {
+                timeout.mPrev.mNext = timeout.mNext;
+            }
+            else {
+                mHead = timeout.mNext;
+            }
+            if (timeout.mNext != null) {
+                timeout.mNext.mPrev = timeout.mPrev;
+            }
+            else {
+                mTail = timeout.mPrev;
+            }
+            timeout.mBucket = null;
+            timeout.mPrev = null;
+            timeout.mNext = null;
+        }
+
+        private Timeout<?> mHead;
+        private Timeout<?> mTail;
+    }
+
+// MARK: - Constants
+
+    public static final long DEFAULT_TICK_MILLIS = 10L;
+
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    // About 146 years
+    private static final long MAX_DELAY_NANOS = Long.MAX_VALUE >> 1;
+
+// MARK: - Variables
+
+    private final Executor mDelegate;
+
+    private final boolean mShared;
+
+    private final long mTickNanos;
+
+    private final Bucket[] mWheel;
+
+    private final int mMask;
+
+    private final ConcurrentLinkedQueue<Timeout<?>> mNewTimeouts = new ConcurrentLinkedQueue<>();
+
+    private final ConcurrentLinkedQueue<Timeout<?>> mCancelledTimeouts = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger mPendingCount = new AtomicInteger();
+
+    private final Object mLock = new Object();
+
+    private volatile Thread mTimerThread;
+
+    private volatile long mStartTime;
+
+    private volatile boolean mIdle = false;
+
+    private volatile boolean mShutdown = false;
+
+    private boolean mTerminated = false;
+
+    private List<Runnable> mUnfired = new ArrayList<>();
+}
@@ -0,0 +1,392 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A scheduled executor service for tests which runs its tasks on the calling thread in virtual time.
+ * <p>
+ * Nothing runs until the test drives the scheduler: {@link #runUntilIdle()} runs the tasks that are
+ * due at the current virtual time, {@link #advanceBy} moves the clock forward and runs the tasks that
+ * become due on the way. Tasks are run in the order of their trigger time, tasks with the same
+ * trigger time in the order they were scheduled, so every run of a test sees the same interleaving.
+ * <p>
+ * The scheduler replaces the UI thread with {@link ThreadUtils#setUiThreadScheduler}, the thread
+ * which has created it then counts as the UI thread. It can also be passed to the executors and
+ * decorators in place of a worker pool or a timer, and as the {@link Ticker} of the ones which
+ * measure intervals, such as {@link CoalescingExecutor} and {@link RateLimitedExecutor}.
+ */
+public final class VirtualTimeScheduler extends AbstractExecutorService implements ScheduledExecutorService, Ticker
+{
+// MARK: - Construction
+
+    public VirtualTimeScheduler() {
+        mOwnerThread = Thread.currentThread();
+    }
+
+// MARK: - Properties
+
+    /**
+     * Returns the current virtual time in nanoseconds, it starts at zero.
+     */
+    @Override
+    public long nanoTime() {
+        synchronized (mLock) {
+            return mNowNanos;
+        }
+    }
+
+    public long now(@NonNull TimeUnit unit) {
+        return unit.convert(nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the number of tasks which have neither run nor been cancelled.
+     */
+    public int getPendingCount() {
+        synchronized (mLock) {
+            int count = 0;
+            for (VirtualTask<?> task : mQueue) {
+                if (!task.isCancelled()) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Returns {@code true} if the current thread is the thread which has created the scheduler.
+     */
+    public boolean isOwnerThread() {
+        return Thread.currentThread() == mOwnerThread;
+    }
+
+    public @NonNull Thread getOwnerThread() {
+        return mOwnerThread;
+    }
+
+// MARK: - Methods
+
+    /**
+     * Runs the tasks which are due at the current virtual time, including the tasks they schedule
+     * without a delay.
+     *
+     * @return The number of tasks run
+     */
+    public int runUntilIdle() {
+        return runUntil(nanoTime());
+    }
+
+    /**
+     * Moves the virtual clock forward by the given amount of time. The tasks which become due on
+     * the way are run at their trigger time, in order.
+     *
+     * @return The number of tasks run
+     */
+    public int advanceBy(long delay, @NonNull TimeUnit unit) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("delay < 0");
+        }
+        return runUntil(nanoTime() + unit.toNanos(delay));
+    }
+
+    /**
+     * Moves the virtual clock forward to the trigger time of the next task and runs the tasks due then.
+     *
+     * @return The number of tasks run, zero if nothing is scheduled
+     */
+    public int advanceToNext() {
+        VirtualTask<?> task;
+        synchronized (mLock) {
+            purgeCancelled();
+            task = mQueue.peek();
+        }
+        return (task != null) ? runUntil(Math.max(task.mTriggerTime, nanoTime())) : 0;
+    }
+
+    @Override
+    public void execute(@NonNull Runnable runnable) {
+        if (runnable == null) {
+            throw new NullPointerException("runnable is null");
+        }
+        enqueue(new VirtualTask<Void>(runnable, null, 0L, 0L, true));
+    }
+
+    @Override
+    public @NonNull ScheduledFuture<?> schedule(@NonNull Runnable command, long delay, @NonNull TimeUnit unit) {
+        if (command == null || unit == null) {
+            throw new NullPointerException();
+        }
+        return enqueue(new VirtualTask<Void>(command, null, unit.toNanos(Math.max(0L, delay)), 0L, false));
+    }
+
+    @Override
+    public @NonNull <V> ScheduledFuture<V> schedule(@NonNull Callable<V> callable, long delay, @NonNull TimeUnit unit) {
+        if (callable == null || unit == null) {
+            throw new NullPointerException();
+        }
+        return enqueue(new VirtualTask<>(callable, unit.toNanos(Math.max(0L, delay))));
+    }
+
+    @Override
+    public @NonNull ScheduledFuture<?> scheduleAtFixedRate(@NonNull Runnable command, long initialDelay, long period, @NonNull TimeUnit unit) {
+        if (command == null || unit == null) {
+            throw new NullPointerException();
+        }
+        if (period <= 0) {
+            throw new IllegalArgumentException("period <= 0");
+        }
+        return enqueue(new VirtualTask<Void>(command, null, unit.toNanos(Math.max(0L, initialDelay)), unit.toNanos(period), false));
+    }
+
+    @Override
+    public @NonNull ScheduledFuture<?> scheduleWithFixedDelay(@NonNull Runnable command, long initialDelay, long delay, @NonNull TimeUnit unit) {
+        if (command == null || unit == null) {
+            throw new NullPointerException();
+        }
+        if (delay <= 0) {
+            throw new IllegalArgumentException("delay <= 0");
+        }
+        // Tasks take no virtual time to run, so a fixed delay is the same as a fixed rate
+        return scheduleAtFixedRate(command, initialDelay, delay, unit);
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (mLock) {
+            mShutdown = true;
+        }
+    }
+
+    /**
+     * Shuts down the scheduler and returns the tasks which have not run yet, they are cancelled at this point.
+     */
+    @Override
+    public @NonNull List<Runnable> shutdownNow() {
+        List<Runnable> unfired = new ArrayList<>();
+        synchronized (mLock) {
+            mShutdown = true;
+
+            VirtualTask<?> task;
+            while ((task = mQueue.poll()) != null) {
+                if (!task.isCancelled()) {
+                    unfired.add(task);
+                }
+            }
+        }
+
+        for (Runnable runnable : unfired) {
+            ((VirtualTask<?>) runnable).cancel(false);
+        }
+        return unfired;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        synchronized (mLock) {
+            return mShutdown;
+        }
+    }
+
+    @Override
+    public boolean isTerminated() {
+        synchronized (mLock) {
+            purgeCancelled();
+            return mShutdown && !mRunning && mQueue.isEmpty();
+        }
+    }
+
+    /**
+     * Returns immediately, the pending tasks only run while the test drives the scheduler.
+     */
+    @Override
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) {
+        return isTerminated();
+    }
+
+// MARK: - Private Methods
+
+    private @NonNull <V> VirtualTask<V> enqueue(@NonNull VirtualTask<V> task) {
+        synchronized (mLock) {
+            if (mShutdown) {
+                throw new RejectedExecutionException("Scheduler has been shut down");
+            }
+
+            task.mTriggerTime += mNowNanos;
+            task.mSequence = mSequence++;
+            mQueue.add(task);
+        }
+        return task;
+    }
+
+    private int runUntil(long targetNanos) {
+        synchronized (mLock) {
+            if (mRunning) {
+                throw new IllegalStateException("Scheduler is already running, it cannot be driven from its own task");
+            }
+            mRunning = true;
+        }
+
+        int count = 0;
+        try {
+            VirtualTask<?> task;
+            while ((task = pollDue(targetNanos)) != null) {
+                count++;
+                task.run();
+
+                if (task.mRethrow) {
+                    task.rethrowFailure();
+                }
+            }
+        }
+        finally {
+            synchronized (mLock) {
+                mNowNanos = Math.max(mNowNanos, targetNanos);
+                mRunning = false;
+            }
+        }
+        return count;
+    }
+
+    private @Nullable VirtualTask<?> pollDue(long targetNanos) {
+        synchronized (mLock) {
+            purgeCancelled();
+
+            VirtualTask<?> task = mQueue.peek();
+            if (task == null || task.mTriggerTime > targetNanos) {
+                return null;
+            }
+
+            mQueue.poll();
+            mNowNanos = Math.max(mNowNanos, task.mTriggerTime);
+            return task;
+        }
+    }
+
+    // Must be called under the lock
+    private void purgeCancelled() {
+        VirtualTask<?> task;
+        while ((task = mQueue.peek()) != null && task.isCancelled()) {
+            mQueue.poll();
+        }
+    }
+
+    private void reschedule(@NonNull VirtualTask<?> task) {
+        synchronized (mLock) {
+            if (mShutdown) {
+                task.cancel(false);
+                return;
+            }
+
+            task.mTriggerTime += task.mPeriod;
+            task.mSequence = mSequence++;
+            mQueue.add(task);
+        }
+    }
+
+// MARK: - Inner Types
+
+    private final class VirtualTask<V> extends FutureTask<V> implements ScheduledFuture<V>
+    {
+        VirtualTask(@NonNull Runnable runnable, @Nullable V result, long delayNanos, long period, boolean rethrow) {
+            super(runnable, result);
+            mTriggerTime = delayNanos;
+            mPeriod = period;
+            mRethrow = rethrow;
+        }
+
+        VirtualTask(@NonNull Callable<V> callable, long delayNanos) {
+            super(callable);
+            mTriggerTime = delayNanos;
+            mPeriod = 0L;
+            mRethrow = false;
+        }
+
+        @Override
+        public long getDelay(@NonNull TimeUnit unit) {
+            return unit.convert(mTriggerTime - nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(@NonNull Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+            if (other instanceof VirtualTask) {
+                VirtualTask<?> task = (VirtualTask<?>) other;
+                int result = Long.compare(mTriggerTime, task.mTriggerTime);
+                return (result != 0) ? result : Long.compare(mSequence, task.mSequence);
+            }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public void run() {
+            if (mPeriod == 0L) {
+                super.run();
+            }
+            else if (runAndReset()) {
+                reschedule(this);
+            }
+        }
+
+        @Override
+        protected void setException(Throwable cause) {
+            mFailure = cause;
+            super.setException(cause);
+        }
+
+        // A task passed to execute() has no future to report its failure, like on a Looper it fails the caller
+        void rethrowFailure() {
+            Throwable cause = mFailure;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause != null) {
+                throw new RuntimeException(cause);
+            }
+        }
+
+        // Guarded by the lock of the scheduler
+        long mTriggerTime;
+        long mSequence;
+
+        final long mPeriod;
+
+        final boolean mRethrow;
+
+        private Throwable mFailure;
+    }
+
+// MARK: - Variables
+
+    private final Thread mOwnerThread;
+
+    private final Object mLock = new Object();
+
+    private final PriorityQueue<VirtualTask<?>> mQueue = new PriorityQueue<>();
+
+    private long mNowNanos = 0L;
+
+    private long mSequence = 0L;
+
+    private boolean mRunning = false;
+
+    private boolean mShutdown = false;
+}
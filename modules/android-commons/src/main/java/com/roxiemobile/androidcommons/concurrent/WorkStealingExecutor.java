@@ -0,0 +1,401 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An executor service that keeps a separate deque for every worker thread.
+ * <p>
+ * Tasks submitted from a worker thread are pushed to its own deque and taken back in LIFO order,
+ * tasks submitted from other threads are spread over the deques in round-robin order. An idle
+ * worker steals the oldest task from the deques of other workers. Producers contend only on the
+ * deque they push to, so there is no single queue lock and no capacity limit.
+ * <p>
+ * Every deque is split into priority lanes, see {@link LaneQueue#selectLane} for the order in
+ * which the lanes are served.
+ * <p>
+ * Works on all API levels, unlike {@code java.util.concurrent.ForkJoinPool}.
+ */
+final class WorkStealingExecutor extends AbstractExecutorService
+{
+// MARK: - Construction
+
+    WorkStealingExecutor(int parallelism, long agingInterval, @NonNull TimeUnit unit, @NonNull ThreadFactory threadFactory) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism < 1");
+        }
+
+        mThreadFactory = threadFactory;
+        mAgingNanos = unit.toNanos(agingInterval);
+        mQueues = new WorkQueue[parallelism];
+        for (int idx = 0; idx < parallelism; ++idx) {
+            mQueues[idx] = new WorkQueue();
+        }
+        mWorkers = new Worker[parallelism];
+    }
+
+// MARK: - Methods
+
+    @Override
+    public void execute(@NonNull Runnable runnable) {
+        if (runnable == null) {
+            throw new NullPointerException("runnable is null");
+        }
+        if (mShutdown) {
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+
+        Worker worker = currentWorker();
+        WorkQueue queue = (worker != null) ? worker.mQueue : mQueues[nextQueueIndex()];
+        queue.push(runnable);
+        mPendingCount.incrementAndGet();
+
+        // The workers could have seen no pending tasks and exited if shutdown raced with the push
+        if (mShutdown && queue.remove(runnable)) {
+            mPendingCount.decrementAndGet();
+            tryTerminate();
+            throw new RejectedExecutionException("Executor has been shut down");
+        }
+        signalWork();
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (mIdleLock) {
+            mShutdown = true;
+            mIdleLock.notifyAll();
+        }
+        tryTerminate();
+    }
+
+    @Override
+    public @NonNull List<Runnable> shutdownNow() {
+        shutdown();
+
+        List<Runnable> tasks = new ArrayList<>();
+        for (WorkQueue queue : mQueues) {
+            queue.drainTo(tasks);
+        }
+        mPendingCount.addAndGet(-tasks.size());
+
+        synchronized (mIdleLock) {
+            for (Worker worker : mWorkers) {
+                if (worker != null) {
+                    worker.mThread.interrupt();
+                }
+            }
+        }
+        tryTerminate();
+        return tasks;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return mShutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        synchronized (mIdleLock) {
+            return mTerminated;
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (mIdleLock) {
+            while (!mTerminated) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(mIdleLock, remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Returns the number of tasks waiting in the deques.
+     */
+    int getQueuedTaskCount() {
+        return Math.max(0, mPendingCount.get());
+    }
+
+    /**
+     * Removes the cancelled futures from the deques.
+     *
+     * @return The number of removed tasks
+     */
+    int purge() {
+        int count = 0;
+        for (WorkQueue queue : mQueues) {
+            count += queue.purge();
+        }
+        mPendingCount.addAndGet(-count);
+        return count;
+    }
+
+    /**
+     * Returns the number of started worker threads.
+     */
+    int getPoolSize() {
+        synchronized (mIdleLock) {
+            return mWorkerCount;
+        }
+    }
+
+// MARK: - Private Methods
+
+    private @Nullable Worker currentWorker() {
+        return mCurrentWorker.get();
+    }
+
+    private int nextQueueIndex() {
+        return (mNextQueue.getAndIncrement() & Integer.MAX_VALUE) % mQueues.length;
+    }
+
+    private void signalWork() {
+        // Start workers lazily, one per submission, until the parallelism level is reached
+        if (mIdleCount.get() == 0 && mWorkerCount < mWorkers.length) {
+            synchronized (mIdleLock) {
+                // A task accepted right before shutdown still needs a worker to run it
+                if (!mTerminated && (!mShutdown || mPendingCount.get() > 0) && mWorkerCount < mWorkers.length) {
+                    startWorker(mWorkerCount);
+                    mWorkerCount++;
+                    return;
+                }
+            }
+        }
+
+        if (mIdleCount.get() > 0) {
+            synchronized (mIdleLock) {
+                mIdleLock.notify();
+            }
+        }
+    }
+
+    private void startWorker(int index) {
+        Worker worker = new Worker(this, index, mQueues[index]);
+        worker.mThread = mThreadFactory.newThread(worker);
+        mWorkers[index] = worker;
+        worker.mThread.start();
+    }
+
+    private @Nullable Runnable takeTask(@NonNull Worker worker) {
+        final long now = System.nanoTime();
+
+        // Own deque first, newest task first
+        Runnable task = worker.mQueue.poll(true, now, mAgingNanos);
+
+        // Then steal the oldest task from the other deques
+        if (task == null) {
+            int count = mQueues.length;
+            for (int idx = 1; idx < count && task == null; ++idx) {
+                task = mQueues[(worker.mIndex + idx) % count].poll(false, now, mAgingNanos);
+            }
+        }
+
+        if (task != null) {
+            mPendingCount.decrementAndGet();
+        }
+        return task;
+    }
+
+    private boolean awaitWork() {
+        mIdleCount.incrementAndGet();
+        try {
+            synchronized (mIdleLock) {
+                while (mPendingCount.get() <= 0) {
+                    if (mShutdown) {
+                        return false;
+                    }
+                    mIdleLock.wait();
+                }
+            }
+            return true;
+        }
+        catch (InterruptedException e) {
+            return !mShutdown;
+        }
+        finally {
+            mIdleCount.decrementAndGet();
+        }
+    }
+
+    private void runWorker(@NonNull Worker worker) {
+        try {
+            while (true) {
+                Runnable task = takeTask(worker);
+                if (task != null) {
+                    // Clear a stale interrupt left by the previous task
+                    if (!mShutdown) {
+                        Thread.interrupted();
+                    }
+                    runTask(task);
+                }
+                else if (!awaitWork()) {
+                    break;
+                }
+            }
+        }
+        finally {
+            synchronized (mIdleLock) {
+                mExitedCount++;
+            }
+            tryTerminate();
+        }
+    }
+
+    private static void runTask(@NonNull Runnable task) {
+        try {
+            task.run();
+        }
+        catch (Throwable e) {
+            // Keep the worker and its deque alive, report the failure like a dying thread would
+            Thread thread = Thread.currentThread();
+            Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+            if (handler != null) {
+                handler.uncaughtException(thread, e);
+            }
+        }
+    }
+
+    private void tryTerminate() {
+        synchronized (mIdleLock) {
+            if (mShutdown && !mTerminated && mExitedCount == mWorkerCount && mPendingCount.get() <= 0) {
+                mTerminated = true;
+                mIdleLock.notifyAll();
+            }
+        }
+    }
+
+// MARK: - Inner Types
+
+    private static final class WorkQueue
+    {
+        @SuppressWarnings("unchecked")
+        WorkQueue() {
+            mLanes = new ArrayDeque[PrioritizedTask.LANE_COUNT];
+            for (int idx = 0; idx < mLanes.length; ++idx) {
+                mLanes[idx] = new ArrayDeque<>();
+            }
+        }
+
+        void push(@NonNull Runnable task) {
+            synchronized (mLanes) {
+                mLanes[PrioritizedTask.laneOf(task)].addLast(task);
+            }
+        }
+
+        boolean remove(@NonNull Runnable task) {
+            synchronized (mLanes) {
+                return mLanes[PrioritizedTask.laneOf(task)].removeLastOccurrence(task);
+            }
+        }
+
+        /**
+         * Takes the newest task of the selected lane if {@code lifo} is set, the oldest otherwise.
+         * An aged task is always taken from the head of its lane.
+         */
+        @Nullable Runnable poll(boolean lifo, long now, long agingNanos) {
+            synchronized (mLanes) {
+                int lane = LaneQueue.selectLane(mLanes, now, agingNanos);
+                if (lane < 0) {
+                    return null;
+                }
+
+                ArrayDeque<Runnable> deque = mLanes[lane];
+                if (lifo && !PrioritizedTask.isAged(deque.peekFirst(), now, agingNanos)) {
+                    return deque.pollLast();
+                }
+                return deque.pollFirst();
+            }
+        }
+
+        int purge() {
+            int count = 0;
+            synchronized (mLanes) {
+                for (ArrayDeque<Runnable> deque : mLanes) {
+                    for (Iterator<Runnable> it = deque.iterator(); it.hasNext(); ) {
+                        if (PrioritizedTask.isCancelledFuture(it.next())) {
+                            it.remove();
+                            count++;
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        void drainTo(@NonNull List<Runnable> tasks) {
+            synchronized (mLanes) {
+                for (ArrayDeque<Runnable> deque : mLanes) {
+                    tasks.addAll(deque);
+                    deque.clear();
+                }
+            }
+        }
+
+        private final ArrayDeque<Runnable>[] mLanes;
+    }
+
+    private static final class Worker implements Runnable
+    {
+        Worker(@NonNull WorkStealingExecutor owner, int index, @NonNull WorkQueue queue) {
+            mOwner = owner;
+            mIndex = index;
+            mQueue = queue;
+        }
+
+        @Override
+        public void run() {
+            mOwner.mCurrentWorker.set(this);
+            mOwner.runWorker(this);
+        }
+
+        private final WorkStealingExecutor mOwner;
+        private final int mIndex;
+        private final WorkQueue mQueue;
+        private Thread mThread;
+    }
+
+// MARK: - Variables
+
+    private final ThreadFactory mThreadFactory;
+
+    private final long mAgingNanos;
+
+    private final WorkQueue[] mQueues;
+
+    private final Worker[] mWorkers;
+
+    private final ThreadLocal<Worker> mCurrentWorker = new ThreadLocal<>();
+
+    private volatile int mWorkerCount = 0;
+
+    private int mExitedCount = 0;
+
+    private final AtomicInteger mNextQueue = new AtomicInteger();
+
+    private final AtomicInteger mPendingCount = new AtomicInteger();
+
+    private final AtomicInteger mIdleCount = new AtomicInteger();
+
+    private final Object mIdleLock = new Object();
+
+    private volatile boolean mShutdown = false;
+
+    private boolean mTerminated = false;
+}
@@ -0,0 +1,73 @@
+package com.roxiemobile.androidcommons.concurrent
+
+import com.roxiemobile.androidcommons.concurrent.ParallelWorkerThreadExecutor.Priority
+import kotlinx.coroutines.experimental.CoroutineDispatcher
+import kotlin.coroutines.experimental.CoroutineContext
+
+/**
+ * A coroutine dispatcher which resumes the coroutines on a [ParallelWorkerThreadExecutor], in the
+ * lane of the given priority.
+ *
+ * A view with limited parallelism, see [limitedParallelism], shares the threads of the executor
+ * but runs at most the given number of coroutines at a time.
+ */
+class WorkerDispatcher @JvmOverloads constructor(
+        private val mExecutor: ParallelWorkerThreadExecutor,
+        private val mPriority: Priority = Priority.Normal) : CoroutineDispatcher()
+{
+// MARK: - Methods
+
+    override fun dispatch(context: CoroutineContext, block: Runnable) {
+        mExecutor.execute(block, mPriority)
+    }
+
+    /**
+     * Returns a view of this dispatcher which runs at most the given number of coroutines in
+     * parallel, the rest wait in the FIFO queue of the view.
+     */
+    fun limitedParallelism(parallelism: Int): CoroutineDispatcher {
+        if (parallelism < 1) {
+            throw IllegalArgumentException("parallelism < 1")
+        }
+        return LimitedParallelismDispatcher(this, parallelism)
+    }
+
+    override fun toString(): String {
+        return "WorkerDispatcher(${mExecutor.name}, $mPriority)"
+    }
+
+// MARK: - Constants
+
+    companion object
+    {
+        /**
+         * Returns the dispatcher of the [ParallelWorkerThreadExecutor.shared] executor.
+         */
+        @JvmStatic
+        fun shared(): WorkerDispatcher {
+            return SHARED_INSTANCE
+        }
+
+        /**
+         * Returns the dispatcher of the [ParallelWorkerThreadExecutor.io] executor.
+         */
+        @JvmStatic
+        fun io(): WorkerDispatcher {
+            return IO_INSTANCE
+        }
+
+        /**
+         * Returns the dispatcher of the [ParallelWorkerThreadExecutor.compute] executor.
+         */
+        @JvmStatic
+        fun compute(): WorkerDispatcher {
+            return COMPUTE_INSTANCE
+        }
+
+        private val SHARED_INSTANCE by lazy { WorkerDispatcher(ParallelWorkerThreadExecutor.shared()) }
+
+        private val IO_INSTANCE by lazy { WorkerDispatcher(ParallelWorkerThreadExecutor.io()) }
+
+        private val COMPUTE_INSTANCE by lazy { WorkerDispatcher(ParallelWorkerThreadExecutor.compute()) }
+    }
+}
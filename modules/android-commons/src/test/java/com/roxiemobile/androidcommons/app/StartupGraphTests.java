@@ -0,0 +1,246 @@
+package com.roxiemobile.androidcommons.app;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.roxiemobile.androidcommons.app.StartupTask.ThreadAffinity;
+import com.roxiemobile.androidcommons.concurrent.ThreadUtils;
+import com.roxiemobile.androidcommons.concurrent.Ticker;
+import com.roxiemobile.androidcommons.concurrent.VirtualTimeScheduler;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class StartupGraphTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testTasksRunAfterDependenciesOnTheirThreads() {
+        final List<String> order = new CopyOnWriteArrayList<>();
+        final Thread callingThread = Thread.currentThread();
+
+        StartupGraph graph = new StartupGraph(Arrays.asList(
+                new SleepTask("config", ThreadAffinity.Worker, 30, order),
+                new SleepTask("database", ThreadAffinity.Worker, 60, order),
+                new SleepTask("network", ThreadAffinity.Worker, 20, order, "config"),
+                new StartupTask("ui", ThreadAffinity.Main, "network", "database") {
+                    @Override
+                    public void run(@NonNull Context context) {
+                        assertTrue(Thread.currentThread() == callingThread);
+                        order.add(getName());
+                    }
+                }));
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        StartupGraph.Report report = graph.run(CONTEXT, pool);
+        pool.shutdown();
+
+        assertEquals(4, order.size());
+        assertEquals("ui", order.get(3));
+        assertTrue(order.indexOf("config") < order.indexOf("network"));
+
+        // The independent worker tasks run in parallel
+        long sequentialNanos = 0L;
+        for (StartupGraph.TaskTiming timing : report.getTimings()) {
+            sequentialNanos += timing.getDurationNanos();
+        }
+        assertTrue(report.getCriticalPathNanos() <= report.getTotalNanos());
+        assertTrue(report.getTotalNanos() < sequentialNanos);
+    }
+
+    @Test
+    public void testCriticalPathFollowsLongestChain() {
+        // The tasks run one by one on the calling thread and advance the clock by their durations
+        final FakeTicker ticker = new FakeTicker();
+        StartupGraph graph = new StartupGraph(Arrays.asList(
+                new TickTask("config", ThreadAffinity.Worker, 30, ticker),
+                new TickTask("database", ThreadAffinity.Worker, 60, ticker),
+                new TickTask("network", ThreadAffinity.Worker, 20, ticker, "config"),
+                new TickTask("ui", ThreadAffinity.Main, 5, ticker, "network", "database")), ticker);
+
+        StartupGraph.Report report = graph.run(CONTEXT, Runnable::run);
+
+        assertEquals(Arrays.asList("database", "ui"), report.getCriticalPath());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(65), report.getCriticalPathNanos());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(115), report.getTotalNanos());
+    }
+
+    @Test
+    public void testWorkerBlockingOnMainThreadFails() throws Exception {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        ThreadUtils.setUiThreadScheduler(scheduler);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            StartupGraph graph = new StartupGraph(Arrays.asList(
+                    new StartupTask("handoff", ThreadAffinity.Worker) {
+                        @Override
+                        public void run(@NonNull Context context) {
+                            ThreadUtils.runOnUiThreadBlocking(() -> {});
+                        }
+                    }));
+
+            try {
+                graph.run(CONTEXT, pool);
+                fail("Blocking hand-off is not detected");
+            }
+            catch (IllegalStateException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+                assertTrue(e.getCause().getMessage().contains("StartupGraph"));
+            }
+
+            // The worker thread is released once its task is done
+            assertNull(pool.submit(() -> ThreadUtils.setAwaitedByUiThread(null)).get());
+        }
+        finally {
+            pool.shutdown();
+            ThreadUtils.setUiThreadScheduler(null);
+        }
+    }
+
+    @Test
+    public void testOtherThreadBlockingOnMainThreadWaitsForGraph() throws Exception {
+        final VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        ThreadUtils.setUiThreadScheduler(scheduler);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            // A thread the graph does not own, e.g. started by a third-party SDK
+            final List<String> results = new CopyOnWriteArrayList<>();
+            final Thread[] other = new Thread[1];
+            StartupGraph graph = new StartupGraph(Arrays.asList(
+                    new StartupTask("sdk", ThreadAffinity.Worker) {
+                        @Override
+                        public void run(@NonNull Context context) {
+                            other[0] = new Thread(() -> {
+                                ThreadUtils.runOnUiThreadBlocking(() -> {
+                                    results.add("served");
+                                });
+                                results.add("returned");
+                            });
+                            other[0].start();
+                        }
+                    },
+                    new StartupTask("ui", ThreadAffinity.Main, "sdk") {
+                        @Override
+                        public void run(@NonNull Context context) throws Exception {
+                            // Wait for the hand-off to be posted while the graph is running
+                            for (int idx = 0; idx < 1000 && scheduler.getPendingCount() == 0; ++idx) {
+                                Thread.sleep(1);
+                            }
+                            assertEquals(1, scheduler.getPendingCount());
+                        }
+                    }));
+
+            graph.run(CONTEXT, pool);
+
+            // The hand-off is served once the main thread returns to its Looper
+            scheduler.runUntilIdle();
+            other[0].join(1000);
+            assertEquals(Arrays.asList("served", "returned"), results);
+        }
+        finally {
+            pool.shutdown();
+            ThreadUtils.setUiThreadScheduler(null);
+        }
+    }
+
+    @Test
+    public void testFailureStopsDependentTasks() {
+        final List<String> order = new CopyOnWriteArrayList<>();
+        StartupGraph graph = new StartupGraph(Arrays.asList(
+                new StartupTask("broken", ThreadAffinity.Worker) {
+                    @Override
+                    public void run(@NonNull Context context) throws Exception {
+                        throw new Exception("error");
+                    }
+                },
+                new SleepTask("dependent", ThreadAffinity.Main, 0, order, "broken")));
+
+        try {
+            graph.run(CONTEXT, Runnable::run);
+            fail("Failure is not propagated");
+        }
+        catch (IllegalStateException e) {
+            assertEquals("error", e.getCause().getMessage());
+        }
+        assertEquals(0, order.size());
+    }
+
+    @Test
+    public void testCycleIsRejected() {
+        try {
+            new StartupGraph(Arrays.asList(
+                    new SleepTask("first", ThreadAffinity.Worker, 0, null, "second"),
+                    new SleepTask("second", ThreadAffinity.Worker, 0, null, "first")));
+            fail("Cycle is not detected");
+        }
+        catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+// MARK: - Inner Types
+
+    private static final class SleepTask extends StartupTask
+    {
+        SleepTask(String name, ThreadAffinity affinity, long millis, List<String> order, String... dependencies) {
+            super(name, affinity, dependencies);
+            mMillis = millis;
+            mOrder = order;
+        }
+
+        @Override
+        public void run(@NonNull Context context) throws Exception {
+            Thread.sleep(mMillis);
+            mOrder.add(getName());
+        }
+
+        private final long mMillis;
+
+        private final List<String> mOrder;
+    }
+
+    private static final class TickTask extends StartupTask
+    {
+        TickTask(String name, ThreadAffinity affinity, long millis, FakeTicker ticker, String... dependencies) {
+            super(name, affinity, dependencies);
+            mMillis = millis;
+            mTicker = ticker;
+        }
+
+        @Override
+        public void run(@NonNull Context context) {
+            mTicker.mNowNanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(mMillis));
+        }
+
+        private final long mMillis;
+
+        private final FakeTicker mTicker;
+    }
+
+    private static final class FakeTicker implements Ticker
+    {
+        @Override
+        public long nanoTime() {
+            return mNowNanos.get();
+        }
+
+        final AtomicLong mNowNanos = new AtomicLong();
+    }
+
+// MARK: - Constants
+
+    private static final Context CONTEXT = new android.app.Application();
+}
@@ -0,0 +1,57 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class BatchedDispatcherTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testPostsOneMessagePerBatch() {
+        final List<Runnable> messages = new ArrayList<>();
+        final List<Integer> results = new ArrayList<>();
+        BatchedDispatcher dispatcher = new BatchedDispatcher(messages::add);
+
+        for (int idx = 0; idx < 100; ++idx) {
+            final int value = idx;
+            dispatcher.dispatch(() -> results.add(value));
+        }
+        assertEquals(1, messages.size());
+
+        messages.remove(0).run();
+        assertEquals(100, results.size());
+        for (int idx = 0; idx < 100; ++idx) {
+            assertEquals(idx, (int) results.get(idx));
+        }
+        assertTrue(dispatcher.isEmpty());
+        assertTrue(messages.isEmpty());
+    }
+
+    @Test
+    public void testTasksSubmittedWhileDrainingGoToNextBatch() {
+        final List<Runnable> messages = new ArrayList<>();
+        final int[] count = {0};
+        final BatchedDispatcher dispatcher = new BatchedDispatcher(messages::add);
+
+        dispatcher.dispatch(new Runnable() {
+            @Override
+            public void run() {
+                count[0]++;
+                dispatcher.dispatch(this);
+            }
+        });
+
+        messages.remove(0).run();
+        assertEquals(1, count[0]);
+        assertEquals(1, messages.size());
+
+        messages.remove(0).run();
+        assertEquals(2, count[0]);
+    }
+}
@@ -0,0 +1,138 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class CancellationScopeTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testCancelInterruptsRunningAndSkipsQueuedTasks() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        CancellationScope scope = new CancellationScope(pool);
+        CancellationScope child = scope.newChildScope();
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final AtomicInteger executed = new AtomicInteger();
+
+        Future<?> running = scope.submit(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            }
+            catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        for (int idx = 0; idx < 10; ++idx) {
+            child.execute(executed::incrementAndGet);
+        }
+
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        assertTrue(scope.cancel());
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.SECONDS));
+
+        assertTrue(running.isCancelled());
+        assertTrue(child.isCancelled());
+        assertEquals(0, executed.get());
+        assertEquals(1, scope.getInterruptedCount());
+        assertEquals(10, child.getSkippedCount());
+        assertEquals(0, child.getActiveCount());
+    }
+
+    @Test
+    public void testCancelledScopeRejectsTasks() throws Exception {
+        CancellationScope scope = new CancellationScope(Runnable::run);
+        scope.execute(() -> assertSame(scope, CancellationScope.current()));
+        assertEquals(1, scope.getCompletedCount());
+
+        scope.cancel();
+        try {
+            scope.execute(() -> {});
+            fail("Task is accepted by cancelled scope");
+        }
+        catch (RejectedExecutionException e) {
+            // Expected
+        }
+        assertTrue(scope.newChildScope().isCancelled());
+    }
+
+    @Test
+    public void testClosedChildIsReleasedWhenDone() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            CancellationScope scope = new CancellationScope(pool);
+
+            // A child without tasks is released right away
+            scope.newChildScope().close();
+            assertEquals(0, scope.getChildCount());
+
+            final CountDownLatch release = new CountDownLatch(1);
+            CancellationScope child = scope.newChildScope();
+            Future<?> future = child.submit(() -> {
+                release.await();
+                return null;
+            });
+
+            child.close();
+            assertTrue(child.isClosed());
+            assertEquals(1, scope.getChildCount());
+            try {
+                child.execute(() -> {});
+                fail("Task is accepted by closed scope");
+            }
+            catch (RejectedExecutionException e) {
+                // Expected
+            }
+
+            // The child is released once its last task is done
+            release.countDown();
+            future.get(1, TimeUnit.SECONDS);
+            assertEquals(1, child.getCompletedCount());
+            assertEquals(0, scope.getChildCount());
+            assertFalse(child.isCancelled());
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCompletedChildScopesDoNotAccumulate() throws Exception {
+        CancellationScope scope = new CancellationScope(Runnable::run);
+        for (int idx = 0; idx < 1_000; ++idx) {
+            CancellationScope child = scope.newChildScope();
+            child.execute(() -> {});
+            child.close();
+        }
+        assertEquals(0, scope.getChildCount());
+
+        // A closed parent is released together with its last child
+        CancellationScope parent = scope.newChildScope();
+        CancellationScope child = parent.newChildScope();
+        parent.close();
+        assertEquals(1, scope.getChildCount());
+
+        child.close();
+        assertEquals(0, parent.getChildCount());
+        assertEquals(0, scope.getChildCount());
+    }
+}
@@ -0,0 +1,83 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import com.roxiemobile.androidcommons.concurrent.CoalescingExecutor.Edge;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public final class CoalescingExecutorTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testDebounceRunsLatestTaskAfterQuietPeriod() {
+        VirtualTimeScheduler timer = new VirtualTimeScheduler();
+        CoalescingExecutor executor = CoalescingExecutor.debounce(Runnable::run, timer, timer, 50, TimeUnit.MILLISECONDS, Edge.Trailing);
+
+        final List<String> results = new ArrayList<>();
+        for (int idx = 0; idx < 10; ++idx) {
+            final String value = "query" + idx;
+            executor.execute(() -> results.add(value));
+            executor.execute("other", () -> results.add("other" + value));
+            timer.advanceBy(5, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(0, results.size());
+
+        // The quiet period starts with the last task, which has been executed 5 ms ago
+        timer.advanceBy(44, TimeUnit.MILLISECONDS);
+        assertEquals(0, results.size());
+
+        timer.advanceBy(1, TimeUnit.MILLISECONDS);
+        // Every key runs its latest task, the keys are not ordered against each other
+        assertEquals(2, results.size());
+        assertEquals(new HashSet<>(Arrays.asList("query9", "otherquery9")), new HashSet<>(results));
+        assertEquals(0, executor.getActiveTokenCount());
+        assertEquals(0, timer.getPendingCount());
+    }
+
+    @Test
+    public void testThrottleRunsLeadingAndTrailingTasks() {
+        VirtualTimeScheduler timer = new VirtualTimeScheduler();
+        CoalescingExecutor executor = CoalescingExecutor.throttle(Runnable::run, timer, timer, 100, TimeUnit.MILLISECONDS, Edge.Both);
+
+        final List<Integer> results = new ArrayList<>();
+        for (int idx = 0; idx < 5; ++idx) {
+            final int value = idx;
+            executor.execute(() -> results.add(value));
+        }
+        assertEquals(1, results.size());
+        assertEquals(0, (int) results.get(0));
+
+        timer.advanceBy(99, TimeUnit.MILLISECONDS);
+        assertEquals(1, results.size());
+
+        // The trailing task runs at the end of the interval
+        timer.advanceBy(1, TimeUnit.MILLISECONDS);
+        assertEquals(Arrays.asList(0, 4), results);
+
+        timer.advanceBy(100, TimeUnit.MILLISECONDS);
+        assertEquals(2, results.size());
+        assertEquals(0, executor.getActiveTokenCount());
+    }
+
+    @Test
+    public void testCancelDropsPendingTask() {
+        VirtualTimeScheduler timer = new VirtualTimeScheduler();
+        CoalescingExecutor executor = CoalescingExecutor.debounce(Runnable::run, timer, timer, 20, TimeUnit.MILLISECONDS, Edge.Trailing);
+
+        final List<Integer> results = new ArrayList<>();
+        executor.execute("token", () -> results.add(1));
+        executor.cancel("token");
+
+        timer.advanceBy(100, TimeUnit.MILLISECONDS);
+        assertEquals(0, results.size());
+        assertEquals(0, timer.getPendingCount());
+    }
+}
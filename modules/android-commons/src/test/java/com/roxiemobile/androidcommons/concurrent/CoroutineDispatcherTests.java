@@ -0,0 +1,169 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import kotlin.coroutines.experimental.CoroutineContext;
+import kotlin.coroutines.experimental.EmptyCoroutineContext;
+import kotlinx.coroutines.experimental.CoroutineDispatcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class CoroutineDispatcherTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testImmediateMainDispatcherSkipsDispatchOnUiThread() throws Exception {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        ThreadUtils.setUiThreadScheduler(scheduler);
+        try {
+            final MainThreadDispatcher dispatcher = MainThreadDispatcher.shared();
+            assertTrue(dispatcher.isDispatchNeeded(EmptyCoroutineContext.INSTANCE));
+            assertFalse(dispatcher.getImmediate().isDispatchNeeded(EmptyCoroutineContext.INSTANCE));
+
+            final boolean[] needed = {false};
+            Thread worker = new Thread(() -> needed[0] = dispatcher.getImmediate().isDispatchNeeded(EmptyCoroutineContext.INSTANCE));
+            worker.start();
+            worker.join();
+            assertTrue(needed[0]);
+
+            final List<String> results = new ArrayList<>();
+            dispatcher.dispatch(EmptyCoroutineContext.INSTANCE, () -> results.add("first"));
+            dispatcher.getImmediate().dispatch(EmptyCoroutineContext.INSTANCE, () -> results.add("second"));
+            assertEquals(0, results.size());
+
+            scheduler.runUntilIdle();
+            assertEquals(Arrays.asList("first", "second"), results);
+        }
+        finally {
+            ThreadUtils.setUiThreadScheduler(null);
+        }
+    }
+
+    @Test
+    public void testLimitedParallelismCapsRunningBlocks() throws Exception {
+        ParallelWorkerThreadExecutor executor = new ParallelWorkerThreadExecutor.Builder()
+                .setCorePoolSize(4)
+                .build();
+        CoroutineDispatcher dispatcher = new WorkerDispatcher(executor).limitedParallelism(2);
+
+        final int blockCount = 40;
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(blockCount);
+
+        for (int idx = 0; idx < blockCount; ++idx) {
+            dispatcher.dispatch(EmptyCoroutineContext.INSTANCE, () -> {
+                int count = running.incrementAndGet();
+                maxRunning.accumulateAndGet(count, Math::max);
+                try {
+                    Thread.sleep(2);
+                }
+                catch (InterruptedException e) {
+                    // Ignored
+                }
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, maxRunning.get());
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testRejectedRunIsRetriedForBlocksQueuedMeanwhile() {
+        final List<String> results = new ArrayList<>();
+        RejectingDispatcher underlying = new RejectingDispatcher(1);
+        final CoroutineDispatcher dispatcher = new LimitedParallelismDispatcher(underlying, 1);
+
+        // Another caller queues its block while the run of the first one is being rejected
+        underlying.mOnDispatch = () -> dispatcher.dispatch(EmptyCoroutineContext.INSTANCE, () -> results.add("second"));
+        try {
+            dispatcher.dispatch(EmptyCoroutineContext.INSTANCE, () -> results.add("first"));
+            fail("Block is not rejected");
+        }
+        catch (RejectedExecutionException e) {
+            // Expected
+        }
+
+        assertEquals(Arrays.asList("second"), results);
+        assertEquals(2, underlying.mDispatchCount);
+    }
+
+    @Test
+    public void testBlocksQueuedMeanwhileAreDroppedWhenRetryIsRejected() {
+        RejectingDispatcher underlying = new RejectingDispatcher(Integer.MAX_VALUE);
+        final CoroutineDispatcher dispatcher = new LimitedParallelismDispatcher(underlying, 1);
+
+        final FutureTask<String> second = new FutureTask<>(() -> "second");
+        underlying.mOnDispatch = () -> dispatcher.dispatch(EmptyCoroutineContext.INSTANCE, second);
+        try {
+            dispatcher.dispatch(EmptyCoroutineContext.INSTANCE, () -> {});
+            fail("Block is not rejected");
+        }
+        catch (RejectedExecutionException e) {
+            // Expected
+        }
+
+        // The dropped future does not leave its waiters hanging
+        assertTrue(second.isCancelled());
+        assertEquals(2, underlying.mDispatchCount);
+
+        // The view is not left with a stale worker
+        underlying.mRejectCount = 0;
+        final List<String> results = new ArrayList<>();
+        dispatcher.dispatch(EmptyCoroutineContext.INSTANCE, () -> results.add("third"));
+        assertEquals(Arrays.asList("third"), results);
+    }
+
+// MARK: - Inner Types
+
+    /**
+     * Rejects the given number of dispatches and runs the rest on the calling thread.
+     */
+    private static final class RejectingDispatcher extends CoroutineDispatcher
+    {
+        RejectingDispatcher(int rejectCount) {
+            mRejectCount = rejectCount;
+        }
+
+        @Override
+        public void dispatch(CoroutineContext context, Runnable block) {
+            mDispatchCount++;
+
+            Runnable onDispatch = mOnDispatch;
+            mOnDispatch = null;
+            if (onDispatch != null) {
+                onDispatch.run();
+            }
+
+            if (mRejectCount > 0) {
+                mRejectCount--;
+                throw new RejectedExecutionException();
+            }
+            block.run();
+        }
+
+        int mRejectCount;
+
+        int mDispatchCount = 0;
+
+        Runnable mOnDispatch;
+    }
+}
@@ -0,0 +1,164 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class DispatchCarrierTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testSteadyStateDispatchAllocatesNothing() throws Exception {
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threadBean.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        final Integer value = 42;
+        final Callable<Integer> callable = () -> value;
+        final Runnable runnable = () -> {};
+
+        HandOffThread target = new HandOffThread();
+        target.start();
+        try {
+            // Warm up the carrier and let the JIT compile the path
+            for (int idx = 0; idx < WARM_UP_ITERATIONS; ++idx) {
+                ThreadUtils.dispatchBlocking(target, null, callable);
+                ThreadUtils.dispatchBlocking(target, runnable, null);
+            }
+
+            long callerThreadId = Thread.currentThread().getId();
+            long callerBytes = threadBean.getThreadAllocatedBytes(callerThreadId);
+            long targetBytes = threadBean.getThreadAllocatedBytes(target.getId());
+
+            int sum = 0;
+            for (int idx = 0; idx < ITERATIONS; ++idx) {
+                sum += ThreadUtils.dispatchBlocking(target, null, callable);
+                ThreadUtils.dispatchBlocking(target, runnable, null);
+            }
+
+            callerBytes = threadBean.getThreadAllocatedBytes(callerThreadId) - callerBytes;
+            targetBytes = threadBean.getThreadAllocatedBytes(target.getId()) - targetBytes;
+
+            assertEquals(42 * ITERATIONS, sum);
+            // Allow for the bytes of the measurement itself, which are less than one per dispatch
+            assertEquals("Caller allocated " + callerBytes + " bytes", 0, callerBytes / ITERATIONS);
+            assertEquals("Target allocated " + targetBytes + " bytes", 0, targetBytes / ITERATIONS);
+        }
+        finally {
+            target.quit();
+        }
+    }
+
+    @Test
+    public void testOutcomeDoesNotLeakAcrossReuses() throws Exception {
+        Executor inline = Runnable::run;
+
+        assertEquals("first", ThreadUtils.dispatchBlocking(inline, null, () -> "first"));
+        try {
+            ThreadUtils.dispatchBlocking(inline, null, () -> {
+                throw new IllegalStateException("boom");
+            });
+            fail();
+        }
+        catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        assertNull(ThreadUtils.dispatchBlocking(inline, () -> {}, null));
+        assertEquals("second", ThreadUtils.dispatchBlocking(inline, null, () -> "second"));
+    }
+
+    @Test
+    public void testAbandonedCarrierIsNotReused() throws Exception {
+        final AtomicReference<Runnable> held = new AtomicReference<>();
+        Executor holding = held::set;
+
+        // The waiter gives up before the target thread has run the task
+        Thread.currentThread().interrupt();
+        try {
+            ThreadUtils.dispatchBlocking(holding, null, () -> "late");
+            fail();
+        }
+        catch (InterruptedException e) {
+            // Expected
+        }
+        Runnable abandoned = held.get();
+
+        final AtomicReference<Runnable> posted = new AtomicReference<>();
+        assertEquals("fresh", ThreadUtils.dispatchBlocking(runnable -> {
+            posted.set(runnable);
+            runnable.run();
+        }, null, () -> "fresh"));
+        assertNotSame(abandoned, posted.get());
+
+        // The late run of the abandoned task does not disturb the new carrier of the thread
+        abandoned.run();
+        assertEquals("next", ThreadUtils.dispatchBlocking(runnable -> {
+            assertSame(posted.get(), runnable);
+            runnable.run();
+        }, null, () -> "next"));
+    }
+
+// MARK: - Inner Types
+
+    /**
+     * Stands in for the main thread, runs the posted carriers without allocating anything itself.
+     */
+    private static final class HandOffThread extends Thread implements Executor
+    {
+        HandOffThread() {
+            super("HandOffThread");
+            setDaemon(true);
+        }
+
+        @Override
+        public void execute(Runnable runnable) {
+            mSlot = runnable;
+            LockSupport.unpark(this);
+        }
+
+        @Override
+        public void run() {
+            while (!mQuit) {
+                Runnable runnable = mSlot;
+                if (runnable == null) {
+                    LockSupport.park(this);
+                    continue;
+                }
+
+                mSlot = null;
+                runnable.run();
+            }
+        }
+
+        void quit() {
+            mQuit = true;
+            LockSupport.unpark(this);
+        }
+
+        private volatile Runnable mSlot;
+
+        private volatile boolean mQuit;
+    }
+
+// MARK: - Constants
+
+    private static final int WARM_UP_ITERATIONS = 20_000;
+
+    private static final int ITERATIONS = 20_000;
+}
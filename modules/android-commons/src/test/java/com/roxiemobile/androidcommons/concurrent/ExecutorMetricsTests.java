@@ -0,0 +1,102 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import org.junit.Test;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public final class ExecutorMetricsTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int idx = 0; idx < 99; ++idx) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(3));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(4), histogram.getPercentileNanos(50));
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(4), histogram.getPercentileNanos(99));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5), histogram.getPercentileNanos(100));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5), histogram.getMaxNanos());
+    }
+
+    @Test
+    public void testWrappedTaskIsRecorded() {
+        final VirtualTimeScheduler ticker = new VirtualTimeScheduler();
+        ExecutorMetrics metrics = new ExecutorMetrics("test", null, ticker);
+
+        final AtomicLong listenerRunNanos = new AtomicLong(-1);
+        metrics.setListener((executorName, waitNanos, runNanos) -> listenerRunNanos.set(runNanos));
+
+        Runnable task = metrics.wrap(() -> ticker.advanceBy(3, TimeUnit.MILLISECONDS));
+        assertEquals(0, metrics.snapshot().getQueueDepth());
+
+        metrics.onEnqueued();
+        assertEquals(1, metrics.snapshot().getQueueDepth());
+
+        ticker.advanceBy(5, TimeUnit.MILLISECONDS);
+        task.run();
+
+        ExecutorMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(0, snapshot.getQueueDepth());
+        assertEquals(0, snapshot.getActiveCount());
+        assertEquals(1, snapshot.getCompletedCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5), snapshot.getWaitTime().getMaxNanos());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(3), snapshot.getRunTime().getMaxNanos());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(3), listenerRunNanos.get());
+    }
+
+    @Test
+    public void testRejectedAndDroppedTasksAreNotQueued() throws Exception {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        ThreadUtils.setUiThreadScheduler(scheduler);
+        try {
+            MainThreadExecutor executor = MainThreadExecutor.newInstance();
+            executor.setMetricsEnabled(true);
+            ExecutorMetrics metrics = executor.getMetrics();
+
+            // Executed on the UI thread, the tasks run inline
+            executor.execute(() -> {});
+            executor.execute(() -> {});
+            assertEquals(0, metrics.snapshot().getQueueDepth());
+            assertEquals(2, metrics.snapshot().getCompletedCount());
+
+            // Posted from another thread, the tasks wait for the UI thread
+            Thread poster = new Thread(() -> {
+                executor.execute(() -> {});
+                executor.execute(() -> {});
+            });
+            poster.start();
+            poster.join();
+            assertEquals(2, metrics.snapshot().getQueueDepth());
+
+            assertEquals(2, executor.shutdownNow().size());
+            assertEquals(0, metrics.snapshot().getQueueDepth());
+
+            try {
+                executor.execute(() -> {});
+                fail("Task is accepted by shut down executor");
+            }
+            catch (RejectedExecutionException e) {
+                // Expected
+            }
+            assertEquals(0, metrics.snapshot().getQueueDepth());
+
+            // The dropped tasks never run
+            scheduler.runUntilIdle();
+            assertEquals(0, metrics.snapshot().getQueueDepth());
+            assertEquals(2, metrics.snapshot().getCompletedCount());
+        }
+        finally {
+            ThreadUtils.setUiThreadScheduler(null);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public final class FrameBudgetSchedulerTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testTasksAreSlicedByBudget() {
+        final FakeFrames frames = new FakeFrames();
+        FrameBudgetScheduler scheduler = frames.newScheduler(8);
+
+        final List<Integer> results = new ArrayList<>();
+        for (int idx = 0; idx < 5; ++idx) {
+            final int value = idx;
+            scheduler.execute(() -> {
+                frames.mNowNanos += TimeUnit.MILLISECONDS.toNanos(2);
+                results.add(value);
+            });
+        }
+
+        // A single frame is requested for the whole burst
+        assertEquals(1, frames.mPending.size());
+
+        frames.runFrame();
+        assertEquals(Arrays.asList(0, 1, 2, 3), results);
+        assertEquals(1, frames.mPending.size());
+
+        frames.runFrame();
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), results);
+        assertEquals(0, frames.mPending.size());
+
+        assertEquals(2, scheduler.getFrameCount());
+        assertEquals(1, scheduler.getDeferredFrameCount());
+        assertEquals(0, scheduler.getOverrunCount());
+    }
+
+    @Test
+    public void testOverrunIsReportedAndRestIsDeferred() {
+        final FakeFrames frames = new FakeFrames();
+        FrameBudgetScheduler scheduler = frames.newScheduler(8);
+
+        final long[] overrun = new long[3];
+        scheduler.setOverrunListener((elapsedNanos, budgetNanos, taskCount) -> {
+            overrun[0] = elapsedNanos;
+            overrun[1] = budgetNanos;
+            overrun[2] = taskCount;
+        });
+
+        final List<String> results = new ArrayList<>();
+        scheduler.execute(() -> {
+            frames.mNowNanos += TimeUnit.MILLISECONDS.toNanos(20);
+            results.add("slow");
+        });
+        scheduler.execute(() -> results.add("fast"));
+
+        // The slow task runs alone even though it exceeds the budget
+        frames.runFrame();
+        assertEquals(Arrays.asList("slow"), results);
+        assertEquals(1, scheduler.getOverrunCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(20), overrun[0]);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(8), overrun[1]);
+        assertEquals(1, overrun[2]);
+
+        frames.runFrame();
+        assertEquals(Arrays.asList("slow", "fast"), results);
+        assertEquals(1, scheduler.getOverrunCount());
+        assertEquals(1, scheduler.getDeferredFrameCount());
+    }
+
+    @Test
+    public void testFrameIsRequestedAgainAfterQueueDrains() {
+        final FakeFrames frames = new FakeFrames();
+        FrameBudgetScheduler scheduler = frames.newScheduler(8);
+
+        final int[] count = {0};
+        scheduler.execute(() -> count[0]++);
+        frames.runFrame();
+        assertEquals(0, frames.mPending.size());
+
+        // A task queued by a running task joins the current slice while the budget lasts
+        scheduler.execute(() -> {
+            count[0]++;
+            scheduler.execute(() -> count[0]++);
+        });
+        assertEquals(1, frames.mPending.size());
+
+        frames.runFrame();
+        assertEquals(3, count[0]);
+        assertEquals(0, frames.mPending.size());
+        assertEquals(2, scheduler.getFrameCount());
+        assertEquals(0, scheduler.getDeferredFrameCount());
+    }
+
+// MARK: - Inner Types
+
+    /**
+     * Stands in for the Choreographer and the clock, the test runs the requested frames one by one.
+     */
+    private static final class FakeFrames
+    {
+        FrameBudgetScheduler newScheduler(long budgetMillis) {
+            return new FrameBudgetScheduler(budgetMillis, TimeUnit.MILLISECONDS, () -> mNowNanos, mPending::add);
+        }
+
+        void runFrame() {
+            mPending.remove(0).run();
+        }
+
+        long mNowNanos = 0L;
+
+        final List<Runnable> mPending = new ArrayList<>();
+    }
+}
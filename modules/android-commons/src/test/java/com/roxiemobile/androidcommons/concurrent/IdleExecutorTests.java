@@ -0,0 +1,241 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.os.MessageQueue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public final class IdleExecutorTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testTasksAreSlicedByBudget() {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        ThreadUtils.setUiThreadScheduler(scheduler);
+        try {
+            final FakeLooper looper = new FakeLooper(scheduler);
+            IdleExecutor executor = looper.newExecutor(() -> looper.mNowNanos);
+
+            final List<Integer> results = new ArrayList<>();
+            for (int idx = 0; idx < 5; ++idx) {
+                final int value = idx;
+                executor.execute(() -> {
+                    looper.mNowNanos += TimeUnit.MILLISECONDS.toNanos(3);
+                    results.add(value);
+                });
+            }
+
+            // A single idle handler is registered for the whole burst
+            assertEquals(1, looper.mIdleHandlers.size());
+
+            assertNull(looper.runIdlePeriod());
+            assertEquals(Arrays.asList(0, 1, 2), results);
+            assertEquals(1, looper.mIdleHandlers.size());
+
+            // The slice has posted a message, which starts the next idle period
+            assertEquals(1, scheduler.runUntilIdle());
+            assertNull(looper.runIdlePeriod());
+            assertEquals(Arrays.asList(0, 1, 2, 3, 4), results);
+            assertEquals(0, looper.mIdleHandlers.size());
+
+            assertEquals(2, executor.getSliceCount());
+            assertEquals(5, executor.getIdleTaskCount());
+            assertEquals(0, executor.getForcedTaskCount());
+        }
+        finally {
+            ThreadUtils.setUiThreadScheduler(null);
+        }
+    }
+
+    @Test
+    public void testIdleLooperRunsEverySlice() {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        ThreadUtils.setUiThreadScheduler(scheduler);
+        try {
+            final FakeLooper looper = new FakeLooper(scheduler);
+            IdleExecutor executor = looper.newExecutor(() -> looper.mNowNanos);
+
+            final List<Integer> results = new ArrayList<>();
+            for (int idx = 0; idx < 20; ++idx) {
+                final int value = idx;
+                executor.execute(() -> {
+                    looper.mNowNanos += TimeUnit.MILLISECONDS.toNanos(5);
+                    results.add(value);
+                });
+            }
+
+            // No other message arrives, the slices keep the Looper going until the queue is empty
+            looper.runUntilIdle();
+            assertEquals(20, results.size());
+            assertEquals(10, executor.getSliceCount());
+            assertEquals(0, executor.getForcedTaskCount());
+            assertEquals(0, looper.mIdleHandlers.size());
+        }
+        finally {
+            ThreadUtils.setUiThreadScheduler(null);
+        }
+    }
+
+    @Test
+    public void testOverdueTasksAreForcedByDeadline() {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        ThreadUtils.setUiThreadScheduler(scheduler);
+        try {
+            FakeLooper looper = new FakeLooper(scheduler);
+            IdleExecutor executor = looper.newExecutor(scheduler);
+
+            final List<String> results = new ArrayList<>();
+            executor.execute(() -> results.add("first"));
+            executor.execute(() -> results.add("second"));
+
+            // The Looper never gets idle
+            scheduler.advanceBy(MAX_DEFERRAL_MILLIS + 1, TimeUnit.MILLISECONDS);
+            assertEquals(Arrays.asList("first", "second"), results);
+            assertEquals(2, executor.getForcedTaskCount());
+
+            // The idle handler is still registered, the next task gets a deadline all the same
+            assertEquals(1, looper.mIdleHandlers.size());
+            executor.execute(() -> results.add("third"));
+
+            scheduler.advanceBy(MAX_DEFERRAL_MILLIS + 1, TimeUnit.MILLISECONDS);
+            assertEquals(Arrays.asList("first", "second", "third"), results);
+            assertEquals(3, executor.getForcedTaskCount());
+            assertEquals(0, executor.getIdleTaskCount());
+        }
+        finally {
+            ThreadUtils.setUiThreadScheduler(null);
+        }
+    }
+
+    @Test
+    public void testThrowingForcedTaskKeepsDeadline() {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        ThreadUtils.setUiThreadScheduler(scheduler);
+        try {
+            FakeLooper looper = new FakeLooper(scheduler);
+            IdleExecutor executor = looper.newExecutor(scheduler);
+
+            final List<String> results = new ArrayList<>();
+            executor.execute(() -> {
+                throw new IllegalStateException("Task has failed");
+            });
+            executor.execute(() -> results.add("second"));
+
+            scheduler.advanceBy(MAX_DEFERRAL_MILLIS + 1, TimeUnit.MILLISECONDS);
+            assertEquals(0, results.size());
+
+            // The task behind the throwing one is forced by the next deadline
+            scheduler.advanceBy(1, TimeUnit.MILLISECONDS);
+            assertEquals(Arrays.asList("second"), results);
+            assertEquals(2, executor.getForcedTaskCount());
+        }
+        finally {
+            ThreadUtils.setUiThreadScheduler(null);
+        }
+    }
+
+    @Test
+    public void testIdleHandlerIsRegisteredAgainAfterThrow() {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        ThreadUtils.setUiThreadScheduler(scheduler);
+        try {
+            FakeLooper looper = new FakeLooper(scheduler);
+            IdleExecutor executor = looper.newExecutor(scheduler);
+
+            final List<String> results = new ArrayList<>();
+            executor.execute(() -> {
+                throw new IllegalStateException("Task has failed");
+            });
+            executor.execute(() -> results.add("second"));
+
+            // The MessageQueue drops the throwing idle handler
+            assertNotNull(looper.runIdlePeriod());
+            assertEquals(0, looper.mIdleHandlers.size());
+
+            // ... and the executor registers it again from a message
+            scheduler.runUntilIdle();
+            assertEquals(1, looper.mIdleHandlers.size());
+
+            assertNull(looper.runIdlePeriod());
+            assertEquals(Arrays.asList("second"), results);
+            assertEquals(0, looper.mIdleHandlers.size());
+            assertEquals(2, executor.getIdleTaskCount());
+        }
+        finally {
+            ThreadUtils.setUiThreadScheduler(null);
+        }
+    }
+
+// MARK: - Inner Types
+
+    /**
+     * Stands in for the MessageQueue of the main thread, whose messages are the tasks of the
+     * scheduler. Like the real one it runs the idle handlers once per idle period, and a new idle
+     * period starts only after a message has been delivered.
+     */
+    private static final class FakeLooper
+    {
+        FakeLooper(VirtualTimeScheduler scheduler) {
+            mScheduler = scheduler;
+        }
+
+        IdleExecutor newExecutor(Ticker ticker) {
+            return new IdleExecutor(SLICE_BUDGET_MILLIS, MAX_DEFERRAL_MILLIS, TimeUnit.MILLISECONDS, ticker, mIdleHandlers::add);
+        }
+
+        /**
+         * Runs every idle handler once, the ones which return false or throw are removed.
+         *
+         * @return The exception thrown by a handler, if any
+         */
+        RuntimeException runIdlePeriod() {
+            RuntimeException failure = null;
+            for (MessageQueue.IdleHandler handler : new ArrayList<>(mIdleHandlers)) {
+                boolean keep;
+                try {
+                    keep = handler.queueIdle();
+                }
+                catch (RuntimeException e) {
+                    failure = e;
+                    keep = false;
+                }
+                if (!keep) {
+                    mIdleHandlers.remove(handler);
+                }
+            }
+            return failure;
+        }
+
+        /**
+         * Delivers the due messages and runs the idle periods until no message is left.
+         */
+        void runUntilIdle() {
+            mScheduler.runUntilIdle();
+            do {
+                runIdlePeriod();
+            }
+            while (mScheduler.runUntilIdle() > 0);
+        }
+
+        private final VirtualTimeScheduler mScheduler;
+
+        long mNowNanos = 0L;
+
+        final List<MessageQueue.IdleHandler> mIdleHandlers = new ArrayList<>();
+    }
+
+// MARK: - Constants
+
+    private static final long SLICE_BUDGET_MILLIS = 8L;
+
+    private static final long MAX_DEFERRAL_MILLIS = 100L;
+}
@@ -0,0 +1,147 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class KeyedSerialExecutorTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testTasksOfSameKeyRunInOrder() throws Exception {
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        final KeyedSerialExecutor<Integer> executor = new KeyedSerialExecutor<>(pool);
+
+        final int keys = 8;
+        final int tasksPerKey = 500;
+        final List<List<Integer>> results = new ArrayList<>();
+        for (int idx = 0; idx < keys; ++idx) {
+            results.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+
+        final CountDownLatch latch = new CountDownLatch(keys * tasksPerKey);
+        for (int jdx = 0; jdx < tasksPerKey; ++jdx) {
+            for (int key = 0; key < keys; ++key) {
+                final int value = jdx;
+                final List<Integer> list = results.get(key);
+                executor.execute(key, () -> {
+                    list.add(value);
+                    latch.countDown();
+                });
+            }
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for (List<Integer> list : results) {
+            assertEquals(tasksPerKey, list.size());
+            for (int idx = 0; idx < tasksPerKey; ++idx) {
+                assertEquals(idx, (int) list.get(idx));
+            }
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void testIdleMailboxesAreReclaimed() throws Exception {
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        final KeyedSerialExecutor<Integer> executor = new KeyedSerialExecutor<>(pool);
+
+        final int keys = 10_000;
+        final CountDownLatch latch = new CountDownLatch(keys);
+        for (int key = 0; key < keys; ++key) {
+            executor.execute(key, latch::countDown);
+        }
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, executor.getActiveKeyCount());
+    }
+
+    @Test
+    public void testRejectedKeyDropsTasksQueuedMeanwhile() throws Exception {
+        final AtomicReference<KeyedSerialExecutor<String>> executor = new AtomicReference<>();
+        final FutureTask<Void> queuedMeanwhile = new FutureTask<>(() -> {}, null);
+        final boolean[] reject = {true};
+
+        executor.set(new KeyedSerialExecutor<>(runnable -> {
+            if (reject[0]) {
+                // Another producer queues a task for the key before the rejection is handled
+                executor.get().execute("key", queuedMeanwhile);
+                throw new RejectedExecutionException();
+            }
+            runnable.run();
+        }));
+
+        try {
+            executor.get().execute("key", () -> {});
+            fail("Task is not rejected");
+        }
+        catch (RejectedExecutionException e) {
+            // Do nothing
+        }
+        assertTrue(queuedMeanwhile.isCancelled());
+        assertEquals(0, executor.get().getActiveKeyCount());
+
+        // The key is usable again once the delegate accepts the tasks
+        reject[0] = false;
+        final int[] count = {0};
+        executor.get().execute("key", () -> count[0]++);
+        assertEquals(1, count[0]);
+        assertEquals(0, executor.get().getActiveKeyCount());
+    }
+
+    @Test
+    public void testThrowingTaskOnSaturatedDelegateDoesNotStrandKey() {
+        // The delegate accepts one run at a time, the rest is rejected as if it was saturated
+        final List<Runnable> accepted = new ArrayList<>();
+        final boolean[] saturated = {false};
+        KeyedSerialExecutor<String> executor = new KeyedSerialExecutor<>(runnable -> {
+            if (saturated[0]) {
+                throw new RejectedExecutionException();
+            }
+            accepted.add(runnable);
+            saturated[0] = true;
+        });
+
+        final List<String> results = new ArrayList<>();
+        executor.execute("key", () -> {
+            throw new IllegalStateException("Task has failed");
+        });
+        executor.execute("key", () -> results.add("second"));
+        assertEquals(1, accepted.size());
+
+        try {
+            accepted.remove(0).run();
+            fail("Failure is not propagated");
+        }
+        catch (IllegalStateException e) {
+            assertEquals("Task has failed", e.getMessage());
+        }
+
+        // The task behind the throwing one has been drained inline and the key is released
+        assertEquals(Collections.singletonList("second"), results);
+        assertEquals(0, executor.getActiveKeyCount());
+
+        saturated[0] = false;
+        executor.execute("key", () -> results.add("third"));
+        assertEquals(1, accepted.size());
+        accepted.remove(0).run();
+        assertEquals(Arrays.asList("second", "third"), results);
+    }
+}
@@ -0,0 +1,63 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import com.roxiemobile.androidcommons.concurrent.ParallelWorkerThreadExecutor.Priority;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public final class LaneQueueTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testHigherPriorityLaneIsServedFirst() {
+        LaneQueue queue = new LaneQueue(4, 1, TimeUnit.HOURS);
+
+        Runnable prefetch = new PrioritizedTask(() -> {}, Priority.Prefetch);
+        Runnable normal = new PrioritizedTask(() -> {}, Priority.Normal);
+        Runnable interactive = new PrioritizedTask(() -> {}, Priority.Interactive);
+
+        assertTrue(queue.offer(prefetch));
+        assertTrue(queue.offer(normal));
+        assertTrue(queue.offer(interactive));
+        assertEquals(3, queue.size());
+
+        assertSame(interactive, queue.poll());
+        assertSame(normal, queue.poll());
+        assertSame(prefetch, queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testEveryLaneIsBoundedSeparately() {
+        LaneQueue queue = new LaneQueue(1, 1, TimeUnit.HOURS);
+
+        assertTrue(queue.offer(new PrioritizedTask(() -> {}, Priority.Prefetch)));
+        assertFalse(queue.offer(new PrioritizedTask(() -> {}, Priority.Prefetch)));
+        assertTrue(queue.offer(new PrioritizedTask(() -> {}, Priority.Interactive)));
+        assertTrue(queue.offer(() -> {}));
+        assertFalse(queue.offer(() -> {}));
+        assertEquals(0, queue.remainingCapacity());
+    }
+
+    @Test
+    public void testAgedTaskIsServedAheadOfHigherLanes() throws Exception {
+        LaneQueue queue = new LaneQueue(4, 10, TimeUnit.MILLISECONDS);
+
+        Runnable prefetch = new PrioritizedTask(() -> {}, Priority.Prefetch);
+        assertTrue(queue.offer(prefetch));
+        Thread.sleep(20);
+
+        Runnable interactive = new PrioritizedTask(() -> {}, Priority.Interactive);
+        assertTrue(queue.offer(interactive));
+
+        assertSame(prefetch, queue.poll());
+        assertSame(interactive, queue.poll());
+    }
+}
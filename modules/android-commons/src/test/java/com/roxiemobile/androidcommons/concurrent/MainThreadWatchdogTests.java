@@ -0,0 +1,120 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class MainThreadWatchdogTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testStalledHandoffIsReported() throws Exception {
+        MainThreadWatchdog watchdog = new MainThreadWatchdog();
+        watchdog.setEnabled(true);
+        watchdog.setThreshold(20, TimeUnit.MILLISECONDS);
+
+        final List<MainThreadWatchdog.StallReport> reports = new ArrayList<>();
+        watchdog.setListener(reports::add);
+
+        // A busy "main" thread which runs the handed-off task late
+        final CountDownLatch busy = new CountDownLatch(1);
+        final FutureTask<String> task = new FutureTask<>(() -> "done");
+        Thread mainThread = new Thread(() -> {
+            try {
+                busy.await();
+                Thread.sleep(100);
+            }
+            catch (InterruptedException e) {
+                // Ignored
+            }
+            task.run();
+        }, "FakeMainThread");
+        mainThread.start();
+        busy.countDown();
+
+        assertEquals("done", watchdog.await(task, mainThread));
+        assertEquals(1, watchdog.getHandoffCount());
+        assertEquals(1, watchdog.getStallCount());
+        assertEquals(1, reports.size());
+
+        MainThreadWatchdog.StallReport report = reports.get(0);
+        assertEquals(Thread.currentThread().getId(), report.getWaitingThreadId());
+        assertTrue(report.getMainThreadStackTrace().length > 0);
+        assertTrue(report.getWaitNanos() >= report.getCaptureNanos());
+        assertTrue(watchdog.getMaxWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void testFastHandoffIsCountedOnly() throws Exception {
+        MainThreadWatchdog watchdog = new MainThreadWatchdog();
+        watchdog.setEnabled(true);
+
+        FutureTask<String> task = new FutureTask<>(() -> "done");
+        new Thread(task).start();
+
+        assertEquals("done", watchdog.await(task, null));
+        assertEquals(0, watchdog.getStallCount());
+    }
+
+    @Test
+    public void testStallIsReportedBeforeHandoffCompletes() throws Exception {
+        MainThreadWatchdog watchdog = new MainThreadWatchdog();
+        watchdog.setEnabled(true);
+        watchdog.setThreshold(20, TimeUnit.MILLISECONDS);
+
+        // The "main" thread serves the hand-off only once the stall has been reported
+        final FutureTask<String> task = new FutureTask<>(() -> "done");
+        final CountDownLatch reported = new CountDownLatch(1);
+        final AtomicBoolean doneWhenReported = new AtomicBoolean(true);
+        watchdog.setListener(report -> {
+            doneWhenReported.set(task.isDone());
+            reported.countDown();
+        });
+
+        Thread mainThread = new Thread(() -> {
+            try {
+                reported.await(5, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                // Ignored
+            }
+            task.run();
+        }, "FakeMainThread");
+        mainThread.start();
+
+        assertEquals("done", watchdog.await(task, mainThread));
+        assertFalse(doneWhenReported.get());
+        assertEquals(1, watchdog.getStallCount());
+        mainThread.join();
+    }
+
+    @Test
+    public void testFailingListenerDoesNotReplaceResult() throws Exception {
+        MainThreadWatchdog watchdog = new MainThreadWatchdog();
+        watchdog.setEnabled(true);
+        watchdog.setThreshold(10, TimeUnit.MILLISECONDS);
+        watchdog.setListener(report -> {
+            throw new IllegalStateException("Listener has failed");
+        });
+
+        FutureTask<String> task = new FutureTask<>(() -> {
+            Thread.sleep(50);
+            return "done";
+        });
+        new Thread(task).start();
+
+        assertEquals("done", watchdog.await(task, null));
+        assertEquals(1, watchdog.getStallCount());
+        assertEquals(1, watchdog.getHandoffCount());
+    }
+}
@@ -0,0 +1,139 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares the {@link MpmcBlockingQueue} with the {@link LinkedBlockingQueue} under 1, 4 and 16
+ * producer threads feeding two consumers, the way tasks are submitted to a small worker pool.
+ * <p>
+ * Runs only when the {@code benchmarks} system property is set, e.g. with
+ * {@code ./gradlew test -Pbenchmarks}. The results are printed only, nothing is asserted since the
+ * timings depend on the host.
+ */
+public final class MpmcBlockingQueueBenchmarks
+{
+// MARK: - Tests
+
+    @Test
+    public void benchmarkProducers() throws Exception {
+        assumeTrue(Boolean.getBoolean(BENCHMARKS_PROPERTY));
+
+        // Warm up both queues before measuring
+        measure(new LinkedBlockingQueue<>(CAPACITY), 4);
+        measure(new MpmcBlockingQueue<>(CAPACITY), 4);
+
+        for (int producerCount : PRODUCER_COUNTS) {
+            report("LinkedBlockingQueue", producerCount, measure(new LinkedBlockingQueue<>(CAPACITY), producerCount));
+            report("MpmcBlockingQueue", producerCount, measure(new MpmcBlockingQueue<>(CAPACITY), producerCount));
+        }
+    }
+
+// MARK: - Private Methods
+
+    private static Result measure(final BlockingQueue<long[]> queue, int producerCount) throws InterruptedException {
+        final int perProducer = ELEMENTS / producerCount;
+        final int total = perProducer * producerCount;
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(producerCount + CONSUMER_COUNT);
+        final LatencyHistogram latency = new LatencyHistogram();
+        final List<Thread> threads = new ArrayList<>();
+
+        for (int idx = 0; idx < producerCount; ++idx) {
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int jdx = 0; jdx < perProducer; ++jdx) {
+                        queue.put(new long[] {System.nanoTime()});
+                    }
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                done.countDown();
+            }));
+        }
+
+        for (int idx = 0; idx < CONSUMER_COUNT; ++idx) {
+            final int share = total / CONSUMER_COUNT + ((idx == 0) ? total % CONSUMER_COUNT : 0);
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    for (int jdx = 0; jdx < share; ++jdx) {
+                        long[] element = queue.take();
+                        latency.record(System.nanoTime() - element[0]);
+                    }
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                done.countDown();
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        boolean completed = done.await(1, TimeUnit.MINUTES);
+        long elapsed = System.nanoTime() - startTime;
+
+        // The threads blocked in put() or take() are released by the interrupt
+        for (Thread thread : threads) {
+            thread.interrupt();
+            thread.join();
+        }
+        if (!completed) {
+            fail("Benchmark has timed out");
+        }
+        return new Result(total, elapsed, latency);
+    }
+
+    private static void report(String name, int producerCount, Result result) {
+        System.out.println(String.format(Locale.US, "%s, %d producers: %.2f M ops/s, latency mean %d ns, p99 %d ns",
+                name, producerCount, result.mOperations * 1e3 / result.mNanos,
+                result.mLatency.getMeanNanos(), result.mLatency.getPercentileNanos(99)));
+    }
+
+// MARK: - Inner Types
+
+    private static final class Result
+    {
+        Result(int operations, long nanos, LatencyHistogram latency) {
+            mOperations = operations;
+            mNanos = nanos;
+            mLatency = latency;
+        }
+
+        final int mOperations;
+
+        final long mNanos;
+
+        final LatencyHistogram mLatency;
+    }
+
+// MARK: - Constants
+
+    private static final String BENCHMARKS_PROPERTY = "benchmarks";
+
+    private static final int[] PRODUCER_COUNTS = {1, 4, 16};
+
+    private static final int CONSUMER_COUNT = 2;
+
+    private static final int CAPACITY = 1024;
+
+    private static final int ELEMENTS = 1_000_000;
+}
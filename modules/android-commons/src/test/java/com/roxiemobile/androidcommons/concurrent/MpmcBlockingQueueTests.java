@@ -0,0 +1,206 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import com.roxiemobile.androidcommons.concurrent.ParallelWorkerThreadExecutor.QueueMode;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public final class MpmcBlockingQueueTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testFifoOrderAndCapacity() {
+        MpmcBlockingQueue<Integer> queue = new MpmcBlockingQueue<>(3);
+        assertEquals(4, queue.capacity());
+
+        for (int lap = 0; lap < 3; ++lap) {
+            for (int idx = 0; idx < 4; ++idx) {
+                assertTrue(queue.offer(idx));
+            }
+            assertFalse(queue.offer(4));
+            assertEquals(4, queue.size());
+            assertEquals(0, queue.remainingCapacity());
+
+            for (int idx = 0; idx < 4; ++idx) {
+                assertEquals(idx, (int) queue.poll());
+            }
+            assertNull(queue.poll());
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    @Test
+    public void testRemoveLeavesSkippedTombstone() {
+        MpmcBlockingQueue<String> queue = new MpmcBlockingQueue<>(8);
+        queue.addAll(Arrays.asList("a", "b", "c"));
+
+        assertTrue(queue.remove("b"));
+        assertFalse(queue.remove("b"));
+        assertEquals(Arrays.asList("a", "c"), new ArrayList<>(queue));
+
+        // The tombstone is not counted but still takes its slot
+        assertEquals(2, queue.size());
+        assertEquals(5, queue.remainingCapacity());
+
+        List<String> drained = new ArrayList<>();
+        assertEquals(2, queue.drainTo(drained));
+        assertEquals(Arrays.asList("a", "c"), drained);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testTakeParksUntilElementArrives() throws Exception {
+        final MpmcBlockingQueue<String> queue = new MpmcBlockingQueue<>(2);
+        final String[] taken = {null};
+        Thread consumer = new Thread(() -> {
+            try {
+                taken[0] = queue.take();
+            }
+            catch (InterruptedException e) {
+                // Ignored
+            }
+        });
+        consumer.start();
+
+        Thread.sleep(50);
+        queue.offer("value");
+        consumer.join(1000);
+        assertEquals("value", taken[0]);
+
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testRecycledTombstoneWakesParkedProducer() throws Exception {
+        final MpmcBlockingQueue<String> queue = new MpmcBlockingQueue<>(2);
+        queue.addAll(Arrays.asList("a", "b"));
+        assertTrue(queue.remove("a"));
+        assertTrue(queue.remove("b"));
+        assertTrue(queue.isEmpty());
+
+        Thread producer = new Thread(() -> {
+            try {
+                queue.put("c");
+            }
+            catch (InterruptedException e) {
+                // Ignored
+            }
+        });
+        producer.start();
+        while (producer.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+
+        // Only tombstones are polled, their slots are freed all the same
+        assertNull(queue.poll());
+        producer.join(1000);
+        assertFalse(producer.isAlive());
+        assertEquals("c", queue.poll());
+    }
+
+    @Test
+    public void testProducersAndConsumersExchangeEveryElement() throws Exception {
+        final MpmcBlockingQueue<Long> queue = new MpmcBlockingQueue<>(64);
+        final int threadCount = 4;
+        final int perThread = 20_000;
+
+        final AtomicLong sum = new AtomicLong();
+        final AtomicInteger received = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(threadCount * 2);
+
+        for (int idx = 0; idx < threadCount; ++idx) {
+            final long base = (long) idx * perThread;
+            new Thread(() -> {
+                try {
+                    for (int jdx = 0; jdx < perThread; ++jdx) {
+                        queue.put(base + jdx);
+                    }
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                done.countDown();
+            }).start();
+
+            new Thread(() -> {
+                try {
+                    for (int jdx = 0; jdx < perThread; ++jdx) {
+                        sum.addAndGet(queue.take());
+                        received.incrementAndGet();
+                    }
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                done.countDown();
+            }).start();
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        long count = (long) threadCount * perThread;
+        assertEquals(count, received.get());
+        assertEquals(count * (count - 1) / 2, sum.get());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testPoolRunsOnLockFreeQueue() throws Exception {
+        ParallelWorkerThreadExecutor executor = new ParallelWorkerThreadExecutor.Builder()
+                .setQueueMode(QueueMode.LockFree)
+                .setCorePoolSize(2)
+                .build();
+
+        final AtomicInteger executed = new AtomicInteger();
+        for (int idx = 0; idx < 100; ++idx) {
+            executor.execute(executed::incrementAndGet);
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals(100, executed.get());
+    }
+
+    @Test
+    public void testPoolTerminatesAfterPurge() throws Exception {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new MpmcBlockingQueue<Runnable>(8));
+
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    // Ignored
+                }
+            });
+
+            // The purged task leaves a tombstone behind which must not keep the worker waiting
+            Future<?> future = executor.submit(() -> {});
+            assertTrue(future.cancel(false));
+            executor.purge();
+            assertTrue(executor.getQueue().isEmpty());
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+}
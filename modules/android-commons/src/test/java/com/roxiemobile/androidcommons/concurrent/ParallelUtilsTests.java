@@ -0,0 +1,77 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public final class ParallelUtilsTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testParallelForVisitsEveryIndexOnce() {
+        final int count = 100_000;
+        final AtomicIntegerArray visits = new AtomicIntegerArray(count);
+
+        ParallelUtils.parallelFor(count, visits::incrementAndGet, sPool);
+        for (int idx = 0; idx < count; ++idx) {
+            assertEquals(1, visits.get(idx));
+        }
+    }
+
+    @Test
+    public void testParallelMapAndReduceKeepOrder() {
+        List<Integer> list = new LinkedList<>();
+        for (int idx = 0; idx < 10_000; ++idx) {
+            list.add(idx);
+        }
+
+        List<String> strings = ParallelUtils.parallelMap(list, String::valueOf, sPool);
+        assertEquals(list.size(), strings.size());
+        for (int idx = 0; idx < list.size(); ++idx) {
+            assertEquals(String.valueOf(idx), strings.get(idx));
+        }
+
+        // String concatenation is associative, but not commutative
+        String joined = ParallelUtils.parallelReduce(new ArrayList<>(strings), "",
+                (result, value) -> result + value.charAt(0), (left, right) -> left + right, sPool);
+        StringBuilder expected = new StringBuilder();
+        for (String value : strings) {
+            expected.append(value.charAt(0));
+        }
+        assertEquals(expected.toString(), joined);
+    }
+
+    @Test
+    public void testExceptionIsPropagated() {
+        final IllegalStateException error = new IllegalStateException("error");
+        try {
+            ParallelUtils.parallelFor(100_000, idx -> {
+                if (idx == 54_321) {
+                    throw error;
+                }
+            }, sPool);
+            fail("Exception is not propagated");
+        }
+        catch (IllegalStateException e) {
+            assertSame(error, e);
+        }
+    }
+
+// MARK: - Variables
+
+    private static final ExecutorService sPool = Executors.newFixedThreadPool(4, runnable -> {
+        Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    });
+}
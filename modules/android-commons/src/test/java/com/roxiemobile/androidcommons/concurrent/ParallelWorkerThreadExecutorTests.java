@@ -0,0 +1,220 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.os.Process;
+
+import com.roxiemobile.androidcommons.concurrent.ParallelWorkerThreadExecutor.ExecutionMode;
+import com.roxiemobile.androidcommons.concurrent.ParallelWorkerThreadExecutor.Priority;
+import com.roxiemobile.androidcommons.concurrent.ParallelWorkerThreadExecutor.QosClass;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class ParallelWorkerThreadExecutorTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testShutdownDrainsQueuedTasks() throws Exception {
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            ParallelWorkerThreadExecutor executor = new ParallelWorkerThreadExecutor.Builder()
+                    .setName("Drain")
+                    .setExecutionMode(mode)
+                    .setCorePoolSize(2)
+                    .build();
+
+            final AtomicInteger executed = new AtomicInteger();
+            final String[] threadName = {null};
+            executor.execute(() -> threadName[0] = Thread.currentThread().getName());
+            for (int idx = 0; idx < 100; ++idx) {
+                executor.execute(executed::incrementAndGet);
+            }
+
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+            assertEquals(100, executed.get());
+            assertTrue(threadName[0].startsWith("Drain #"));
+
+            try {
+                executor.execute(executed::incrementAndGet);
+                fail("Task is accepted after shutdown");
+            }
+            catch (RejectedExecutionException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void testShutdownNowReturnsSubmittedTasks() throws Exception {
+        ParallelWorkerThreadExecutor executor = new ParallelWorkerThreadExecutor.Builder()
+                .setCorePoolSize(1)
+                .setMaximumPoolSize(1)
+                .setQueueCapacity(4)
+                .build();
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            }
+            catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        Runnable queued = () -> {};
+        executor.execute(queued);
+
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        List<Runnable> tasks = executor.shutdownNow();
+        assertEquals(1, tasks.size());
+        assertSame(queued, tasks.get(0));
+
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS));
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAdaptivePoolGrowsForBlockingTasks() throws Exception {
+        ParallelWorkerThreadExecutor executor = new ParallelWorkerThreadExecutor.Builder()
+                .setAdaptivePoolSize(1, 16)
+                .build();
+
+        final CountDownLatch latch = new CountDownLatch(64);
+        for (int idx = 0; idx < 64; ++idx) {
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(2);
+                }
+                catch (InterruptedException e) {
+                    // Ignored
+                }
+                latch.countDown();
+            });
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(executor.getBlockedRatio() > 0.5);
+
+        // The resized core pool lets the next tasks start more threads
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int idx = 0; idx < 4; ++idx) {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    // Ignored
+                }
+            });
+        }
+        assertTrue(executor.getPoolSize() > 1);
+
+        release.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testQosClassSetsThreadPriorityForTask() throws Exception {
+        ParallelWorkerThreadExecutor executor = new ParallelWorkerThreadExecutor.Builder()
+                .setCorePoolSize(1)
+                .setMaximumPoolSize(1)
+                .build();
+
+        final int[] priorities = new int[3];
+        executor.execute(() -> priorities[0] = Process.getThreadPriority(Process.myTid()),
+                Priority.Normal, QosClass.UserInteractive);
+        executor.execute(() -> priorities[1] = Process.getThreadPriority(Process.myTid()),
+                Priority.Normal, QosClass.Background);
+        executor.execute(() -> priorities[2] = Process.getThreadPriority(Process.myTid()));
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+
+        assertEquals(Process.THREAD_PRIORITY_FOREGROUND, priorities[0]);
+        assertEquals(Process.THREAD_PRIORITY_BACKGROUND, priorities[1]);
+        assertEquals(Process.THREAD_PRIORITY_BACKGROUND, priorities[2]);
+        assertEquals(2, executor.getQosStats().getSwitchCount());
+        assertEquals(1, executor.getQosStats().getSkippedCount());
+    }
+
+    @Test
+    public void testQosClassRestoresPriorityChangedByTask() throws Exception {
+        ParallelWorkerThreadExecutor executor = new ParallelWorkerThreadExecutor.Builder()
+                .setCorePoolSize(1)
+                .setMaximumPoolSize(1)
+                .build();
+
+        final int[] priorities = new int[3];
+        executor.execute(() -> priorities[0] = Process.getThreadPriority(Process.myTid()),
+                Priority.Normal, QosClass.UserInteractive);
+        executor.execute(() -> Process.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT));
+        executor.execute(() -> priorities[1] = Process.getThreadPriority(Process.myTid()),
+                Priority.Normal, QosClass.Background);
+        executor.execute(() -> priorities[2] = Process.getThreadPriority(Process.myTid()));
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+
+        // The QoS task runs at its own priority and restores the one the previous task has set
+        assertEquals(Process.THREAD_PRIORITY_FOREGROUND, priorities[0]);
+        assertEquals(Process.THREAD_PRIORITY_BACKGROUND, priorities[1]);
+        assertEquals(Process.THREAD_PRIORITY_DEFAULT, priorities[2]);
+        assertEquals(4, executor.getQosStats().getSwitchCount());
+        assertEquals(0, executor.getQosStats().getSkippedCount());
+    }
+
+    @Test
+    public void testSharedInstanceCannotBeShutDown() {
+        try {
+            ParallelWorkerThreadExecutor.shared().shutdown();
+            fail("Shared executor is shut down");
+        }
+        catch (UnsupportedOperationException e) {
+            // Expected
+        }
+        try {
+            ParallelWorkerThreadExecutor.io().shutdownNow();
+            fail("Shared executor is shut down");
+        }
+        catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testDefaultExecutorCanBeReplaced() throws Exception {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        ParallelWorkerThreadExecutor.setDefaultExecutor(scheduler);
+        try {
+            Promise<String> promise = Promise.supplyAsync(() -> "promise");
+            Promise<String> flight = new SingleFlight<String, String>().execute("key", () -> "flight");
+            new KeyedSerialExecutor<String>().execute("key", () -> {});
+            new CancellationScope().execute(() -> {});
+            assertFalse(promise.isDone());
+            assertFalse(flight.isDone());
+
+            // Nothing runs until the test drives the scheduler
+            assertEquals(4, scheduler.runUntilIdle());
+            assertEquals("promise", promise.get());
+            assertEquals("flight", flight.get());
+        }
+        finally {
+            ParallelWorkerThreadExecutor.setDefaultExecutor(null);
+        }
+        assertSame(ParallelWorkerThreadExecutor.shared(), ParallelWorkerThreadExecutor.defaultExecutor());
+    }
+}
@@ -0,0 +1,76 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class PromiseTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testThenApplyAndThenCompose() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+
+        Promise<Integer> promise = Promise.supplyAsync(() -> 20, pool)
+                .thenApply(value -> value + 1, pool)
+                .thenCompose(value -> Promise.supplyAsync(() -> value * 2, pool), DIRECT);
+
+        assertEquals(42, (int) promise.get(1, TimeUnit.SECONDS));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testFailureSkipsStages() throws Exception {
+        final RuntimeException error = new RuntimeException("error");
+        final boolean[] called = {false};
+
+        Promise<String> promise = Promise.<Integer>failed(error)
+                .thenApply(value -> {
+                    called[0] = true;
+                    return String.valueOf(value);
+                }, DIRECT);
+
+        try {
+            promise.get();
+            fail("Failure is not propagated");
+        }
+        catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+        assertTrue(!called[0]);
+        assertEquals("recovered", promise.exceptionally(cause -> "recovered").get());
+    }
+
+    @Test
+    public void testCombineAllOfAnyOf() throws Exception {
+        Promise<Integer> first = new Promise<>();
+        Promise<String> second = new Promise<>();
+
+        Promise<String> combined = first.combine(second, (value1, value2) -> value2 + value1, DIRECT);
+        Promise<Void> all = Promise.allOf(first, second);
+        Promise<Object> any = Promise.anyOf(first, second);
+
+        second.complete("answer=");
+        assertTrue(any.isDone());
+        assertEquals("answer=", any.get());
+        assertTrue(!all.isDone());
+
+        first.complete(42);
+        assertTrue(all.isDone());
+        assertEquals("answer=42", combined.get());
+    }
+
+// MARK: - Constants
+
+    private static final Executor DIRECT = Runnable::run;
+}
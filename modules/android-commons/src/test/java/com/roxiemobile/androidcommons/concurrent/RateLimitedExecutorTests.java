@@ -0,0 +1,110 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class RateLimitedExecutorTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testBurstIsAdmittedAndRestIsPaced() throws Exception {
+        TimerWheelScheduler timer = new TimerWheelScheduler(Runnable::run, 1, TimeUnit.MILLISECONDS, 64);
+        RateLimitedExecutor executor = new RateLimitedExecutor(Runnable::run, timer, 100, 5);
+
+        final AtomicInteger executed = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(15);
+        long startTime = System.nanoTime();
+        for (int idx = 0; idx < 15; ++idx) {
+            executor.execute(() -> {
+                executed.incrementAndGet();
+                latch.countDown();
+            });
+        }
+
+        // The burst runs on the calling thread, the rest waits for the permits
+        assertEquals(5, executed.get());
+        assertEquals(10, executor.getQueuedCount());
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        assertTrue("Elapsed " + elapsedMillis + " ms", elapsedMillis >= 90);
+        assertEquals(10, executor.getDelayedCount());
+        timer.shutdown();
+    }
+
+    @Test
+    public void testTryExecuteRejectsWithoutPermits() {
+        TimerWheelScheduler timer = new TimerWheelScheduler(Runnable::run, 1, TimeUnit.MILLISECONDS, 64);
+        RateLimitedExecutor executor = new RateLimitedExecutor(Runnable::run, timer, 1, 4);
+
+        assertTrue(executor.tryExecute(() -> {}, 3));
+        assertFalse(executor.tryExecute(() -> {}, 3));
+        assertTrue(executor.tryExecute(() -> {}, 1));
+        assertEquals(1, executor.getRejectedCount());
+        assertEquals(2, executor.getAdmittedCount());
+        timer.shutdown();
+    }
+
+    @Test
+    public void testDelegateRejectionRefundsPermits() {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        final boolean[] reject = {true};
+        RateLimitedExecutor executor = new RateLimitedExecutor(runnable -> {
+            if (reject[0]) {
+                throw new RejectedExecutionException();
+            }
+            runnable.run();
+        }, scheduler, scheduler, 1, 4);
+
+        try {
+            executor.tryExecute(() -> {}, 4);
+            fail("Task is not rejected");
+        }
+        catch (RejectedExecutionException e) {
+            // Do nothing
+        }
+        assertEquals(0, executor.getAdmittedCount());
+        assertEquals(1, executor.getRejectedCount());
+
+        // The whole bucket is still available without waiting for a refill
+        reject[0] = false;
+        assertTrue(executor.tryExecute(() -> {}, 4));
+        assertEquals(1, executor.getAdmittedCount());
+        assertEquals(1, executor.getRejectedCount());
+    }
+
+    @Test
+    public void testDelayedFutureRejectedByDelegateIsCancelled() {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        final boolean[] reject = {false};
+        RateLimitedExecutor executor = new RateLimitedExecutor(runnable -> {
+            if (reject[0]) {
+                throw new RejectedExecutionException();
+            }
+            runnable.run();
+        }, scheduler, scheduler, 1, 4);
+
+        executor.execute(() -> {}, 4);
+        FutureTask<String> future = new FutureTask<>(() -> "done");
+        executor.execute(future);
+        assertEquals(1, executor.getDelayedCount());
+
+        // The delegate is shut down by the time the permit accrues
+        reject[0] = true;
+        scheduler.advanceBy(1, TimeUnit.SECONDS);
+        assertTrue(future.isCancelled());
+        assertEquals(1, executor.getAdmittedCount());
+        assertEquals(1, executor.getRejectedCount());
+    }
+}
@@ -0,0 +1,193 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import com.roxiemobile.androidcommons.concurrent.ParallelWorkerThreadExecutor.Priority;
+import com.roxiemobile.androidcommons.concurrent.ParallelWorkerThreadExecutor.QueueMode;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class SaturationPolicyTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testAbort() throws Exception {
+        SaturatedExecutor executor = new SaturatedExecutor(SaturationPolicy.abort());
+        try {
+            executor.execute(() -> {});
+            fail("Task is not rejected");
+        }
+        catch (RejectedExecutionException e) {
+            // Do nothing
+        }
+
+        assertEquals(1, executor.mStats.getSaturatedCount());
+        assertEquals(1, executor.mStats.getAbortedCount());
+        executor.release();
+    }
+
+    @Test
+    public void testCallerRuns() throws Exception {
+        SaturatedExecutor executor = new SaturatedExecutor(SaturationPolicy.callerRuns());
+
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        executor.execute(() -> thread.set(Thread.currentThread()));
+
+        assertSame(Thread.currentThread(), thread.get());
+        assertEquals(1, executor.mStats.getCallerRunsCount());
+        executor.release();
+    }
+
+    @Test
+    public void testBlockWithTimeout() throws Exception {
+        SaturatedExecutor executor = new SaturatedExecutor(SaturationPolicy.blockWithTimeout(10, TimeUnit.MILLISECONDS));
+        try {
+            executor.execute(() -> {});
+            fail("Task is not rejected");
+        }
+        catch (RejectedExecutionException e) {
+            // Do nothing
+        }
+        assertEquals(1, executor.mStats.getBlockTimeoutCount());
+
+        executor.setPolicy(SaturationPolicy.blockWithTimeout(5, TimeUnit.SECONDS));
+        new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException e) {
+                // Do nothing
+            }
+            executor.mBlocker.countDown();
+        }).start();
+        executor.execute(() -> {});
+        assertEquals(1, executor.mStats.getBlockedCount());
+        executor.release();
+    }
+
+    @Test
+    public void testBlockedTaskAbortedByShutdownIsNotCountedAsBlocked() throws Exception {
+        final SaturatedExecutor executor = new SaturatedExecutor(SaturationPolicy.blockWithTimeout(5, TimeUnit.SECONDS));
+        new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException e) {
+                // Do nothing
+            }
+            executor.mExecutor.shutdown();
+            executor.mExecutor.getQueue().clear();
+        }).start();
+
+        try {
+            executor.execute(() -> {});
+            fail("Task is not rejected");
+        }
+        catch (RejectedExecutionException e) {
+            // Do nothing
+        }
+
+        assertEquals(0, executor.mStats.getBlockedCount());
+        assertEquals(1, executor.mStats.getAbortedCount());
+        executor.release();
+    }
+
+    @Test
+    public void testDropOldestOfSameLaneRequiresLanes() throws Exception {
+        ParallelWorkerThreadExecutor executor = new ParallelWorkerThreadExecutor.Builder()
+                .setQueueMode(QueueMode.LockFree)
+                .build();
+        try {
+            executor.setSaturationPolicy(SaturationPolicy.dropOldestOfSameLane());
+            fail("Policy is accepted");
+        }
+        catch (IllegalArgumentException e) {
+            // Do nothing
+        }
+        assertSame(SaturationPolicy.abort(), executor.getSaturationPolicy());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testDropOldestOfSameLane() throws Exception {
+        SaturatedExecutor executor = new SaturatedExecutor(SaturationPolicy.dropOldestOfSameLane());
+
+        executor.execute(new PrioritizedTask(() -> {}, Priority.Interactive));
+        assertEquals(1, executor.mStats.getDroppedCount());
+        assertTrue(executor.mQueued.isCancelled());
+        executor.release();
+    }
+
+    @Test
+    public void testSpillTo() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        SaturatedExecutor executor = new SaturatedExecutor(SaturationPolicy.spillTo(runnable -> latch.countDown()));
+
+        executor.execute(() -> {});
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals(1, executor.mStats.getSpilledCount());
+        executor.release();
+    }
+
+// MARK: - Inner Types
+
+    /**
+     * An executor with one busy thread and one queued task in the interactive lane.
+     */
+    private static final class SaturatedExecutor
+    {
+        SaturatedExecutor(SaturationPolicy policy) throws InterruptedException {
+            mPolicy = policy;
+            mExecutor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS,
+                    new LaneQueue(1, 1, TimeUnit.HOURS), Executors.defaultThreadFactory(),
+                    (runnable, executor) -> mPolicy.saturated(runnable, executor, mStats));
+
+            final CountDownLatch started = new CountDownLatch(1);
+            mExecutor.execute(() -> {
+                started.countDown();
+                try {
+                    mBlocker.await();
+                }
+                catch (InterruptedException e) {
+                    // Do nothing
+                }
+            });
+            assertTrue(started.await(1, TimeUnit.SECONDS));
+
+            mQueued = new FutureTask<>(() -> {}, null);
+            mExecutor.execute(new PrioritizedTask((Runnable) mQueued, Priority.Interactive));
+        }
+
+        void execute(Runnable runnable) {
+            mExecutor.execute(runnable instanceof PrioritizedTask ? runnable : new PrioritizedTask(runnable, Priority.Interactive));
+        }
+
+        void setPolicy(SaturationPolicy policy) {
+            mPolicy = policy;
+        }
+
+        void release() {
+            mBlocker.countDown();
+            mExecutor.shutdown();
+        }
+
+        private volatile SaturationPolicy mPolicy;
+        private final SaturationStats mStats = new SaturationStats();
+        private final ThreadPoolExecutor mExecutor;
+        private final CountDownLatch mBlocker = new CountDownLatch(1);
+        private final Future<?> mQueued;
+    }
+}
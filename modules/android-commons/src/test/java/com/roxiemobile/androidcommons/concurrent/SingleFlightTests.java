@@ -0,0 +1,69 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public final class SingleFlightTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testConcurrentRequestsShareOneExecution() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        SingleFlight<String, Integer> flight = new SingleFlight<>(pool);
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+
+        List<Promise<Integer>> promises = new ArrayList<>();
+        for (int idx = 0; idx < 10; ++idx) {
+            promises.add(flight.execute("config", () -> {
+                release.await();
+                return calls.incrementAndGet();
+            }));
+        }
+        assertEquals(1, flight.getInFlightCount());
+
+        promises.get(0).cancel(false);
+        release.countDown();
+        for (int idx = 1; idx < promises.size(); ++idx) {
+            assertEquals(1, (int) promises.get(idx).get(1, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, calls.get());
+        assertEquals(1, flight.getExecutedCount());
+        assertEquals(9, flight.getSharedCount());
+        assertEquals(0, flight.getInFlightCount());
+
+        // A request after the completion starts a new execution
+        assertEquals(2, (int) flight.execute("config", calls::incrementAndGet).get(1, TimeUnit.SECONDS));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testFailureIsDeliveredToEveryCaller() throws Exception {
+        final Exception error = new Exception("error");
+        SingleFlight<String, Integer> flight = new SingleFlight<>(Runnable::run);
+
+        try {
+            flight.execute("config", () -> { throw error; }).get();
+            fail("Failure is not propagated");
+        }
+        catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+        assertEquals(0, flight.getInFlightCount());
+    }
+}
@@ -0,0 +1,139 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Compares {@link ThreadUtils#runningOnUiThread()} with the implementation it replaced, which took
+ * the monitor on every lookup of the UI thread handler, uncontended and with a thread per core.
+ * <p>
+ * Runs only when the {@code benchmarks} system property is set, e.g. with
+ * {@code ./gradlew test -Pbenchmarks}. The results are printed only, nothing is asserted since the
+ * timings depend on the host. On the JVM both sides call the same stubbed Handler and Looper, so
+ * the figures compare the cost of the lookup itself.
+ */
+public final class ThreadUtilsBenchmarks
+{
+// MARK: - Tests
+
+    @Test
+    public void benchmarkUncontendedLookup() throws Exception {
+        assumeTrue(Boolean.getBoolean(BENCHMARKS_PROPERTY));
+
+        // Warm up both paths before measuring
+        measure(1, LEGACY_LOOKUP);
+        measure(1, CURRENT_LOOKUP);
+
+        report("uncontended", 1, measure(1, LEGACY_LOOKUP), measure(1, CURRENT_LOOKUP));
+    }
+
+    @Test
+    public void benchmarkContendedLookup() throws Exception {
+        assumeTrue(Boolean.getBoolean(BENCHMARKS_PROPERTY));
+
+        final int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        measure(threads, LEGACY_LOOKUP);
+        measure(threads, CURRENT_LOOKUP);
+
+        report("contended", threads, measure(threads, LEGACY_LOOKUP), measure(threads, CURRENT_LOOKUP));
+    }
+
+// MARK: - Private Methods
+
+    private static long measure(int threadCount, final Runnable lookup) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        final List<Thread> threads = new ArrayList<>();
+
+        for (int idx = 0; idx < threadCount; ++idx) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                for (int jdx = 0; jdx < ITERATIONS && !Thread.currentThread().isInterrupted(); ++jdx) {
+                    lookup.run();
+                }
+                done.countDown();
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        boolean completed = done.await(1, TimeUnit.MINUTES);
+        long elapsed = System.nanoTime() - startTime;
+
+        for (Thread thread : threads) {
+            thread.interrupt();
+            thread.join();
+        }
+        if (!completed) {
+            fail("Benchmark has timed out");
+        }
+        return elapsed;
+    }
+
+    private static void report(String name, int threadCount, long legacyNanos, long currentNanos) {
+        double operations = (double) ITERATIONS * threadCount;
+        System.out.println(String.format(Locale.US, "ThreadUtils.runningOnUiThread(), %s (%d threads): " +
+                "locked %.1f ns/op, lock-free %.1f ns/op", name, threadCount,
+                legacyNanos / operations, currentNanos / operations));
+    }
+
+// MARK: - Inner Types
+
+    /**
+     * The lookup of the UI thread as it was implemented before it became lock-free, verbatim.
+     */
+    private static final class LegacyThreadUtils
+    {
+        private static Handler getUiThreadHandler() {
+            synchronized (sLock) {
+                if (sUiThreadHandler == null) {
+                    if (sWillOverride) {
+                        throw new RuntimeException("Did not yet override the UI thread");
+                    }
+                    sUiThreadHandler = new Handler(Looper.getMainLooper());
+                }
+                return sUiThreadHandler;
+            }
+        }
+
+        static boolean runningOnUiThread() {
+            return getUiThreadHandler().getLooper() == Looper.myLooper();
+        }
+
+        private static final Object sLock = new Object();
+
+        private static boolean sWillOverride = false;
+
+        private static Handler sUiThreadHandler;
+    }
+
+// MARK: - Constants
+
+    private static final String BENCHMARKS_PROPERTY = "benchmarks";
+
+    private static final int ITERATIONS = 1_000_000;
+
+    private static volatile boolean sBlackhole;
+
+    private static final Runnable LEGACY_LOOKUP = () -> sBlackhole = LegacyThreadUtils.runningOnUiThread();
+
+    private static final Runnable CURRENT_LOOKUP = () -> sBlackhole = ThreadUtils.runningOnUiThread();
+}
@@ -0,0 +1,151 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class TimerWheelSchedulerTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testFiresScheduledAndSkipsCancelledTimeouts() throws Exception {
+        TimerWheelScheduler scheduler = new TimerWheelScheduler(Runnable::run, 1, TimeUnit.MILLISECONDS, 64);
+
+        final int count = 20_000;
+        final AtomicInteger fired = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(count / 2);
+        List<ScheduledFuture<?>> futures = new ArrayList<>();
+
+        for (int idx = 0; idx < count; ++idx) {
+            futures.add(scheduler.schedule(() -> {
+                fired.incrementAndGet();
+                latch.countDown();
+            }, 200 + idx % 100, TimeUnit.MILLISECONDS));
+        }
+        for (int idx = 0; idx < count; idx += 2) {
+            assertTrue(futures.get(idx).cancel(false));
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(count / 2, fired.get());
+        assertEquals(0, scheduler.getPendingCount());
+
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testDoesNotFireEarly() throws Exception {
+        TimerWheelScheduler scheduler = new TimerWheelScheduler(Runnable::run, 1, TimeUnit.MILLISECONDS, 8);
+
+        final long startTime = System.nanoTime();
+        final long[] elapsed = {0L};
+        ScheduledFuture<?> future = scheduler.schedule(() -> {
+            elapsed[0] = System.nanoTime() - startTime;
+        }, 30, TimeUnit.MILLISECONDS);
+
+        future.get(1, TimeUnit.SECONDS);
+        assertTrue(elapsed[0] >= TimeUnit.MILLISECONDS.toNanos(30));
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testPeriodicTimeout() throws Exception {
+        TimerWheelScheduler scheduler = new TimerWheelScheduler(Runnable::run, 1, TimeUnit.MILLISECONDS, 8);
+
+        final CountDownLatch latch = new CountDownLatch(5);
+        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(latch::countDown, 0, 5, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertTrue(future.cancel(false));
+        assertEquals(0, scheduler.getPendingCount());
+        assertEquals(0, scheduler.shutdownNow().size());
+        assertTrue(scheduler.isTerminated());
+    }
+
+    @Test
+    public void testHugeDelayDoesNotFireAtOnce() throws Exception {
+        TimerWheelScheduler scheduler = new TimerWheelScheduler(Runnable::run, 1, TimeUnit.MILLISECONDS, 8);
+
+        // Keep the timer thread busy, so it lags behind the clock when the timeouts are scheduled
+        final CountDownLatch started = new CountDownLatch(1);
+        scheduler.schedule(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(30);
+            }
+            catch (InterruptedException e) {
+                // Do nothing
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        Thread.sleep(10);
+
+        final AtomicInteger fired = new AtomicInteger();
+        ScheduledFuture<?> nanos = scheduler.schedule(fired::incrementAndGet, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        ScheduledFuture<?> days = scheduler.schedule(fired::incrementAndGet, Long.MAX_VALUE, TimeUnit.DAYS);
+        ScheduledFuture<?> periodic = scheduler.scheduleAtFixedRate(fired::incrementAndGet, Long.MAX_VALUE, Long.MAX_VALUE, TimeUnit.DAYS);
+
+        Thread.sleep(50);
+        assertEquals(0, fired.get());
+        assertTrue(nanos.getDelay(TimeUnit.DAYS) > 365);
+        assertTrue(days.getDelay(TimeUnit.DAYS) > 365);
+        assertEquals(3, scheduler.getPendingCount());
+
+        assertEquals(3, scheduler.shutdownNow().size());
+        assertTrue(periodic.isCancelled());
+    }
+
+    @Test
+    public void testCancelRacingWithPeriodicRunLeavesNothingPending() throws Exception {
+        TimerWheelScheduler scheduler = new TimerWheelScheduler(Runnable::run, 1, TimeUnit.MILLISECONDS, 8);
+
+        for (int iteration = 0; iteration < 100; ++iteration) {
+            final CountDownLatch started = new CountDownLatch(1);
+            ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(started::countDown, 0, 1, TimeUnit.MILLISECONDS);
+
+            assertTrue(started.await(1, TimeUnit.SECONDS));
+            Thread.sleep(iteration % 3);
+            future.cancel(false);
+
+            // The count settles once the timer thread has handed the last run over
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+            while (scheduler.getPendingCount() != 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(0, scheduler.getPendingCount());
+        }
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testSharedInstanceCannotBeShutDown() {
+        try {
+            TimerWheelScheduler.shared().shutdown();
+            fail("Shared scheduler is shut down");
+        }
+        catch (UnsupportedOperationException e) {
+            // Expected
+        }
+        try {
+            TimerWheelScheduler.shared().shutdownNow();
+            fail("Shared scheduler is shut down");
+        }
+        catch (UnsupportedOperationException e) {
+            // Expected
+        }
+        assertFalse(TimerWheelScheduler.shared().isShutdown());
+    }
+}
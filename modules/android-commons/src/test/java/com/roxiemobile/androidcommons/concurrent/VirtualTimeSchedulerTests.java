@@ -0,0 +1,140 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import android.os.Looper;
+
+import com.roxiemobile.androidcommons.concurrent.CoalescingExecutor.Edge;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class VirtualTimeSchedulerTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testTasksRunInTriggerTimeThenSubmissionOrder() {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        final List<String> results = new ArrayList<>();
+
+        scheduler.schedule(() -> results.add("c"), 20, TimeUnit.MILLISECONDS);
+        scheduler.schedule(() -> results.add("a"), 10, TimeUnit.MILLISECONDS);
+        scheduler.schedule(() -> results.add("b"), 10, TimeUnit.MILLISECONDS);
+        scheduler.execute(() -> results.add("now"));
+
+        assertEquals(1, scheduler.runUntilIdle());
+        assertEquals(Arrays.asList("now"), results);
+
+        assertEquals(2, scheduler.advanceBy(15, TimeUnit.MILLISECONDS));
+        assertEquals(Arrays.asList("now", "a", "b"), results);
+        assertEquals(15, scheduler.now(TimeUnit.MILLISECONDS));
+
+        assertEquals(1, scheduler.advanceToNext());
+        assertEquals(Arrays.asList("now", "a", "b", "c"), results);
+        assertEquals(20, scheduler.now(TimeUnit.MILLISECONDS));
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void testTasksSeeTheirTriggerTime() {
+        final VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        final List<Long> times = new ArrayList<>();
+
+        scheduler.schedule(() -> {
+            times.add(scheduler.now(TimeUnit.MILLISECONDS));
+            scheduler.schedule(() -> times.add(scheduler.now(TimeUnit.MILLISECONDS)), 5, TimeUnit.MILLISECONDS);
+        }, 10, TimeUnit.MILLISECONDS);
+
+        scheduler.advanceBy(1, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList(10L, 15L), times);
+    }
+
+    @Test
+    public void testPeriodicTaskAndCancel() {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        final int[] count = {0};
+
+        ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(() -> count[0]++, 0, 10, TimeUnit.MILLISECONDS);
+        scheduler.advanceBy(45, TimeUnit.MILLISECONDS);
+        assertEquals(5, count[0]);
+
+        future.cancel(false);
+        scheduler.advanceBy(100, TimeUnit.MILLISECONDS);
+        assertEquals(5, count[0]);
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void testExecutedTaskFailureIsRethrown() {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        scheduler.execute(() -> {
+            throw new IllegalStateException("boom");
+        });
+
+        try {
+            scheduler.runUntilIdle();
+            fail();
+        }
+        catch (IllegalStateException e) {
+            assertEquals("boom", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testReplacesUiThread() throws Exception {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        Looper looper = ThreadUtils.getUiThreadLooper();
+        ThreadUtils.setUiThreadScheduler(scheduler);
+        try {
+            assertTrue(ThreadUtils.runningOnUiThread());
+            assertSame(looper, ThreadUtils.getUiThreadLooper());
+
+            final List<String> results = new ArrayList<>();
+            ThreadUtils.postOnUiThreadDelayed(() -> results.add("delayed"), 100);
+            ThreadUtils.postOnUiThread(() -> results.add("posted"));
+
+            final boolean[] onUiThread = {true};
+            Thread worker = new Thread(() -> onUiThread[0] = ThreadUtils.runningOnUiThread());
+            worker.start();
+            worker.join();
+            assertFalse(onUiThread[0]);
+
+            scheduler.runUntilIdle();
+            assertEquals(Arrays.asList("posted"), results);
+
+            scheduler.advanceBy(100, TimeUnit.MILLISECONDS);
+            assertEquals(Arrays.asList("posted", "delayed"), results);
+        }
+        finally {
+            ThreadUtils.setUiThreadScheduler(null);
+        }
+    }
+
+    @Test
+    public void testDebounceInVirtualTime() {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        CoalescingExecutor executor = CoalescingExecutor.debounce(scheduler, scheduler, scheduler, 50, TimeUnit.MILLISECONDS, Edge.Trailing);
+
+        final List<Integer> results = new ArrayList<>();
+        for (int idx = 0; idx < 10; ++idx) {
+            final int value = idx;
+            executor.execute(() -> results.add(value));
+            scheduler.advanceBy(20, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(0, results.size());
+
+        scheduler.advanceBy(50, TimeUnit.MILLISECONDS);
+        assertEquals(Arrays.asList(9), results);
+        assertEquals(0, executor.getActiveTokenCount());
+    }
+}
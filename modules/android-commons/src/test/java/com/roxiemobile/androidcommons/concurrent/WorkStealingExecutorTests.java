@@ -0,0 +1,117 @@
+package com.roxiemobile.androidcommons.concurrent;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class WorkStealingExecutorTests
+{
+// MARK: - Tests
+
+    @Test
+    public void testExecutesAllTasksFromManyProducers() throws Exception {
+        final WorkStealingExecutor executor = new WorkStealingExecutor(4, 1, TimeUnit.SECONDS, Executors.defaultThreadFactory());
+        final int producers = 8;
+        final int tasksPerProducer = 1000;
+
+        final AtomicInteger counter = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(producers * tasksPerProducer);
+
+        for (int idx = 0; idx < producers; ++idx) {
+            new Thread(() -> {
+                for (int jdx = 0; jdx < tasksPerProducer; ++jdx) {
+                    executor.execute(() -> {
+                        counter.incrementAndGet();
+                        latch.countDown();
+                    });
+                }
+            }).start();
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(producers * tasksPerProducer, counter.get());
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testExecutesNestedTasks() throws Exception {
+        final WorkStealingExecutor executor = new WorkStealingExecutor(2, 1, TimeUnit.SECONDS, Executors.defaultThreadFactory());
+        final CountDownLatch latch = new CountDownLatch(100);
+
+        executor.execute(() -> {
+            for (int idx = 0; idx < 100; ++idx) {
+                executor.execute(latch::countDown);
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testShutdownNowReturnsQueuedTasks() throws Exception {
+        final WorkStealingExecutor executor = new WorkStealingExecutor(1, 1, TimeUnit.SECONDS, Executors.defaultThreadFactory());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch blocker = new CountDownLatch(1);
+
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                blocker.await();
+            }
+            catch (InterruptedException e) {
+                // Do nothing
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        for (int idx = 0; idx < 10; ++idx) {
+            executor.execute(() -> {});
+        }
+
+        assertEquals(10, executor.shutdownNow().size());
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(executor.isTerminated());
+    }
+
+    @Test
+    public void testShutdownRacingWithSubmitLosesNoTask() throws Exception {
+        for (int iteration = 0; iteration < 200; ++iteration) {
+            final WorkStealingExecutor executor = new WorkStealingExecutor(2, 1, TimeUnit.SECONDS, Executors.defaultThreadFactory());
+            final AtomicInteger accepted = new AtomicInteger();
+            final AtomicInteger executed = new AtomicInteger();
+            final CountDownLatch started = new CountDownLatch(1);
+
+            Thread producer = new Thread(() -> {
+                started.countDown();
+                try {
+                    while (true) {
+                        executor.execute(executed::incrementAndGet);
+                        accepted.incrementAndGet();
+                    }
+                }
+                catch (RejectedExecutionException e) {
+                    // Expected
+                }
+            });
+            producer.start();
+
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            executor.shutdown();
+            producer.join();
+
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+            assertEquals(accepted.get(), executed.get());
+        }
+    }
+}